@@ -0,0 +1,99 @@
+package dev.minco.javatransformer.api;
+
+import java.util.Collection;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import dev.minco.javatransformer.internal.ClassFilters;
+
+/**
+ * Selects the classes a {@link Transformer.FilteredTransformer} runs on
+ * <p>
+ * Filters are checked against the class name first. Only if the name is not enough is the {@link ClassHeader} of the class read,
+ * which does not require parsing its members. Classes which no transformer matches are never parsed.
+ */
+public interface ClassFilter {
+	/**
+	 * @return whether the class matches
+	 */
+	boolean matches(@Nonnull ClassHeader header);
+
+	/**
+	 * @param className class name in JLS format: {@code package1.package2.ClassName}
+	 * @return whether the class matches, or null if its {@link ClassHeader} is needed to decide
+	 */
+	@Nullable
+	default Boolean matchesName(@Nonnull String className) {
+		return null;
+	}
+
+	/**
+	 * @return packages which contain every class this filter matches, including their subpackages, or null if a class in any package may match
+	 */
+	@Nullable
+	default Collection<String> getPackages() {
+		return null;
+	}
+
+	@Contract(pure = true)
+	default ClassFilter and(@Nonnull ClassFilter other) {
+		return new ClassFilters.And(this, other);
+	}
+
+	@Contract(pure = true)
+	default ClassFilter or(@Nonnull ClassFilter other) {
+		return new ClassFilters.Or(this, other);
+	}
+
+	/**
+	 * @param packageName package in JLS format: {@code package1.package2}
+	 * @return filter matching classes in the package or its subpackages
+	 */
+	@Contract(pure = true)
+	static ClassFilter inPackage(@Nonnull String packageName) {
+		return new ClassFilters.InPackage(packageName);
+	}
+
+	/**
+	 * @param glob pattern for the class name, {@code *} matches within one package or class name, {@code **} matches anything and {@code ?} matches one character
+	 * @return filter matching classes with names matching the pattern
+	 */
+	@Contract(pure = true)
+	static ClassFilter named(@Nonnull String glob) {
+		return ClassFilters.Named.glob(glob);
+	}
+
+	/**
+	 * @return filter matching classes with names fully matching the regular expression
+	 */
+	@Contract(pure = true)
+	static ClassFilter matching(@Nonnull Pattern pattern) {
+		return new ClassFilters.Named(pattern, null);
+	}
+
+	/**
+	 * Annotations are read from the class file for {@code .class} inputs, where annotations with {@link java.lang.annotation.RetentionPolicy#SOURCE}
+	 * retention are not present, and from the source for {@code .java} inputs, where they are. A filter for a source retention annotation
+	 * only matches {@code .java} inputs
+	 *
+	 * @param annotationClassName annotation class name in JLS format
+	 * @return filter matching classes annotated with the annotation
+	 */
+	@Contract(pure = true)
+	static ClassFilter annotatedWith(@Nonnull String annotationClassName) {
+		return new ClassFilters.AnnotatedWith(annotationClassName);
+	}
+
+	/**
+	 * @param className class name in JLS format
+	 * @return filter matching the class and classes which directly or indirectly extend or implement it
+	 */
+	@Contract(pure = true)
+	static ClassFilter extendsOrImplements(@Nonnull String className) {
+		return new ClassFilters.SubtypeOf(className);
+	}
+}
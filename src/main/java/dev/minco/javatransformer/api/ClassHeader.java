@@ -0,0 +1,78 @@
+package dev.minco.javatransformer.api;
+
+import java.util.Collections;
+import java.util.List;
+
+import lombok.NonNull;
+
+import org.jetbrains.annotations.Nullable;
+
+import dev.minco.javatransformer.internal.ClassPaths;
+
+/**
+ * Name, direct supertypes and annotations of a class, read without parsing its members. Used by {@link ClassFilter}s
+ * <p>
+ * Class names are in JLS format: {@code package1.package2.ClassName}, {@code package1.package2.ClassName$InnerClass}
+ */
+public final class ClassHeader {
+	private final String name;
+	@Nullable
+	private final String superName;
+	private final List<String> interfaces;
+	private final List<String> annotations;
+	@Nullable
+	private final ClassPath classPath;
+
+	/**
+	 * @param classPath used to find indirect supertypes in {@link #isSubtypeOf(String)}, or null to only check direct supertypes
+	 */
+	public ClassHeader(@NonNull String name, @Nullable String superName, @NonNull List<String> interfaces, @NonNull List<String> annotations, @Nullable ClassPath classPath) {
+		this.name = name;
+		this.superName = superName;
+		this.interfaces = Collections.unmodifiableList(interfaces);
+		this.annotations = Collections.unmodifiableList(annotations);
+		this.classPath = classPath;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Nullable
+	public String getSuperName() {
+		return superName;
+	}
+
+	public List<String> getInterfaces() {
+		return interfaces;
+	}
+
+	/**
+	 * @return visible and invisible annotations on the class
+	 */
+	public List<String> getAnnotations() {
+		return annotations;
+	}
+
+	/**
+	 * @return whether this class is, extends or implements the given class, directly or through its supertypes in the {@link ClassPath}
+	 */
+	public boolean isSubtypeOf(@NonNull String className) {
+		if (name.equals(className) || className.equals(superName) || interfaces.contains(className))
+			return true;
+		if (classPath == null)
+			return false;
+
+		if (superName != null && ClassPaths.isAssignableFrom(classPath, className, superName))
+			return true;
+		for (String itf : interfaces)
+			if (ClassPaths.isAssignableFrom(classPath, className, itf))
+				return true;
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "ClassHeader{name=" + name + ", superName=" + superName + ", interfaces=" + interfaces + ", annotations=" + annotations + '}';
+	}
+}
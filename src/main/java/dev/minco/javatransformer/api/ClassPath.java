@@ -1,6 +1,8 @@
 package dev.minco.javatransformer.api;
 
+import java.io.Closeable;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -9,8 +11,14 @@ import javax.annotation.Nullable;
 import org.jetbrains.annotations.Contract;
 
 import dev.minco.javatransformer.internal.ClassPaths;
+import dev.minco.javatransformer.internal.asm.ClassHierarchy;
 
-public interface ClassPath extends Iterable<ClassInfo> {
+/**
+ * Finds classes by name in a set of folders and jars, used to resolve types
+ * <p>
+ * Instances created by {@link #of(ClassPath, Path...)} are safe for concurrent use, including adding paths while other threads look up classes
+ */
+public interface ClassPath extends Iterable<ClassInfo>, Closeable {
 	/**
 	 * Returns whether the given class name exists
 	 *
@@ -61,6 +69,22 @@ public interface ClassPath extends Iterable<ClassInfo> {
 	 */
 	boolean hasPath(Path path);
 
+	/**
+	 * Releases any archives held open by this {@link ClassPath}. Does not close the parent {@link ClassPath}
+	 * <p>
+	 * {@link ClassInfo} instances obtained from this {@link ClassPath} may fail to load their contents after it has been closed
+	 */
+	@Override
+	default void close() {}
+
+	/**
+	 * Returns the memoised supertypes, subtypes and assignability of the classes in this {@link ClassPath}, shared by every caller
+	 */
+	@Contract(pure = true)
+	default @Nonnull TypeHierarchy getHierarchy() {
+		return ClassHierarchy.of(this);
+	}
+
 	@Contract(pure = true)
 	static @Nonnull ClassPath of(@Nonnull Path... paths) {
 		return of(ClassPaths.SystemClassPath.SYSTEM_CLASS_PATH, paths);
@@ -70,4 +94,14 @@ public interface ClassPath extends Iterable<ClassInfo> {
 	static @Nonnull ClassPath of(@Nullable ClassPath parent, Path... paths) {
 		return ClassPaths.of(parent, paths);
 	}
+
+	/**
+	 * Returns a read only {@link ClassPath} for the given paths which shares its classes with every other open shared {@link ClassPath}
+	 * for the same unchanged paths, so many {@link JavaTransformer}s can use the same dependencies while reading them once
+	 * <p>
+	 * Must be closed once no longer used
+	 */
+	static @Nonnull ClassPath shared(@Nonnull Path... paths) {
+		return ClassPaths.shared(Arrays.asList(paths));
+	}
 }
@@ -0,0 +1,138 @@
+package dev.minco.javatransformer.api;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Input files seen by {@link JavaTransformer#transformIncremental(Path, Path, IncrementalState, java.util.Collection)}, used by the next call to find which files changed
+ * <p>
+ * Can be written to a file with {@link #write(Path)} to keep it between runs
+ */
+public final class IncrementalState {
+	private static final String HEADER = "JavaTransformer incremental state 2";
+
+	private final Path input;
+	private final Path output;
+	private final Map<String, FileState> files;
+
+	IncrementalState(Path input, Path output, Map<String, FileState> files) {
+		this.input = input.toAbsolutePath().normalize();
+		this.output = output.toAbsolutePath().normalize();
+		this.files = Collections.unmodifiableMap(new TreeMap<>(files));
+	}
+
+	public Path getInput() {
+		return input;
+	}
+
+	public Path getOutput() {
+		return output;
+	}
+
+	/**
+	 * @return state of each input file, keyed by its name relative to the input folder with {@code /} separators
+	 */
+	public Map<String, FileState> getFiles() {
+		return files;
+	}
+
+	boolean isFor(Path input, Path output) {
+		return this.input.equals(input.toAbsolutePath().normalize()) && this.output.equals(output.toAbsolutePath().normalize());
+	}
+
+	public static IncrementalState read(@NonNull Path file) {
+		try (val is = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (!HEADER.equals(is.readUTF()))
+				throw new IOException("Not an incremental state file: " + file);
+			val input = Paths.get(is.readUTF());
+			val output = Paths.get(is.readUTF());
+			val files = new TreeMap<String, FileState>();
+			for (int i = is.readInt(); i > 0; i--) {
+				val name = is.readUTF();
+				files.put(name, new FileState(is.readLong(), is.readLong(), is.readUTF()));
+			}
+			return new IncrementalState(input, output, files);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void write(@NonNull Path file) {
+		try (val os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			os.writeUTF(HEADER);
+			os.writeUTF(input.toString());
+			os.writeUTF(output.toString());
+			os.writeInt(files.size());
+			for (val entry : files.entrySet()) {
+				val state = entry.getValue();
+				os.writeUTF(entry.getKey());
+				os.writeLong(state.size);
+				os.writeLong(state.lastModified);
+				os.writeUTF(state.hash);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static final class FileState {
+		final long size;
+		final long lastModified;
+		final String hash;
+
+		FileState(long size, long lastModified, String hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * @return SHA-256 of the file contents in hex
+		 */
+		public String getHash() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o)
+				return true;
+			if (!(o instanceof FileState))
+				return false;
+			val other = (FileState) o;
+			return size == other.size && lastModified == other.lastModified && hash.equals(other.hash);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(size, lastModified, hash);
+		}
+
+		@Override
+		public String toString() {
+			return "FileState{size=" + size + ", lastModified=" + lastModified + ", hash=" + hash + '}';
+		}
+	}
+}
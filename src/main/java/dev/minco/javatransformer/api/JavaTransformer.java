@@ -1,12 +1,7 @@
 package dev.minco.javatransformer.api;
 
-import static com.github.javaparser.Providers.provider;
-
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
@@ -18,20 +13,27 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 import lombok.val;
 
@@ -40,29 +42,50 @@ import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.ClassNode;
 
-import com.github.javaparser.JavaParser;
-import com.github.javaparser.ParseProblemException;
-import com.github.javaparser.ParseStart;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.TypeDeclaration;
 
 import dev.minco.javatransformer.internal.ByteCodeInfo;
+import dev.minco.javatransformer.internal.ClassFilters;
 import dev.minco.javatransformer.internal.SourceInfo;
 import dev.minco.javatransformer.internal.asm.AsmUtil;
 import dev.minco.javatransformer.internal.asm.FilteringClassWriter;
+import dev.minco.javatransformer.internal.asm.LazyClassNode;
+import dev.minco.javatransformer.internal.javaparser.Parsers;
 import dev.minco.javatransformer.internal.util.CachingSupplier;
 import dev.minco.javatransformer.internal.util.DefineClass;
+import dev.minco.javatransformer.internal.util.HashUtil;
 import dev.minco.javatransformer.internal.util.JVMUtil;
 import dev.minco.javatransformer.internal.util.NodeUtil;
-import dev.minco.javatransformer.internal.util.StreamUtil;
-
+import dev.minco.javatransformer.internal.util.OrderedPipeline;
+import dev.minco.javatransformer.internal.zip.ZipReader;
+import dev.minco.javatransformer.internal.zip.ZipWriter;
+
+/**
+ * Loads, transforms and saves the classes and sources in jars and folders
+ * <p>
+ * Each load opens a {@link ClassPath} of its input on top of {@link #getClassPath()}, which {@link ClassInfo}s from that load resolve types
+ * through. After {@link #load(Path)} and {@link #parse(Path)} these are kept open so {@link ClassInfo}s kept by transformers and
+ * {@link #getAfterTransform()} handlers stay usable after the load, until {@link #close()} releases them.
+ * {@link #transform(Path, Path)} and {@link #transformIncremental(Path, Path, IncrementalState, Collection)} release theirs before returning,
+ * so {@link ClassInfo}s from those calls must not be used after them.
+ */
 @ToString
-public class JavaTransformer {
+public class JavaTransformer implements Closeable {
 	private final List<Transformer> transformers = new ArrayList<>();
 	private final SimpleMultiMap<String, Transformer> classTransformers = new SimpleMultiMap<>();
-	private final Map<String, byte[]> transformedFiles = new HashMap<>();
+	private final FilteredTransformers filteredTransformers = new FilteredTransformers();
+	private final Map<String, byte[]> transformedFiles = new LinkedHashMap<>();
 	private final List<Consumer<JavaTransformer>> afterTransform = new ArrayList<>();
 	private ClassPath classPath = ClassPath.of();
+	@Nullable
+	private Executor executor;
+	private int maxInFlight = Runtime.getRuntime().availableProcessors() * 4;
+	private boolean streaming;
+	@Nullable
+	private TransformCache transformCache;
+	@ToString.Exclude
+	private final List<ClassPath> searchPaths = new ArrayList<>();
 
 	/**
 	 * Used to get the path of the jar/folder containing a class
@@ -106,111 +129,395 @@ public class JavaTransformer {
 	}
 
 	public void load(@NonNull Path path) {
-		load(path, true);
+		load(path, transformedFiles::put);
 	}
 
 	public void parse(@NonNull Path path) {
-		load(path, false);
+		load(path, null);
 	}
 
-	private void load(@NonNull Path path, boolean saveTransformedResults) {
+	private void load(@NonNull Path path, @Nullable EntrySink sink) {
 		switch (PathType.of(path)) {
 			case JAR:
-				loadJar(path, saveTransformedResults);
+				loadJar(path, sink);
 				break;
 			case FOLDER:
-				loadFolder(path, saveTransformedResults);
+				loadFolder(path, sink);
 				break;
 		}
 		afterTransform.forEach(handler -> handler.accept(this));
 	}
 
+	/**
+	 * Loads and transforms all entries in {@code load} and saves them to {@code save}
+	 * <p>
+	 * If {@link #setStreaming(boolean) streaming} is enabled each entry is written to the output as soon as it has been transformed,
+	 * so {@link #getTransformedFiles()} will not contain the results of this call when {@link #getAfterTransform()} handlers run.
+	 * A streamed jar is written next to {@code save} and only moved there once every entry has been transformed. A streamed folder
+	 * is written to directly, so if transforming fails it is left with the entries written so far
+	 *
+	 * @param load jar or folder to load
+	 * @param save jar or folder to save to
+	 */
 	public void transform(@NonNull Path load, @NonNull Path save) {
-		load(load, true);
+		val opened = openSearchPathCount();
+		try {
+			transformAndSave(load, save);
+		} finally {
+			closeSearchPaths(opened);
+		}
+	}
+
+	private void transformAndSave(Path load, Path save) {
+		if (streaming) {
+			switch (PathType.of(save)) {
+				case JAR:
+					// a failed transform must not leave a valid but truncated jar at save
+					val temp = save.resolveSibling(save.getFileName() + ".tmp");
+					try {
+						try {
+							try (val sink = new JarSink(temp)) {
+								load(load, sink);
+							}
+							Files.move(temp, save, StandardCopyOption.REPLACE_EXISTING);
+						} finally {
+							Files.deleteIfExists(temp);
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					break;
+				case FOLDER:
+					load(load, new FolderSink(save));
+					break;
+			}
+			return;
+		}
+
+		load(load, transformedFiles::put);
 		save(save);
 
 		clear();
 	}
 
-	private void loadFolder(Path input, boolean saveTransformedResults) {
+	/**
+	 * Transforms the files in the {@code input} folder which changed since {@code previous} was returned, and updates {@code output} to match
+	 * <p>
+	 * Only added, changed and removed files are processed, other entries in {@code output} are kept as they are.
+	 * Files are not transformed again when a class they depend on changes.
+	 * A jar output is rewritten, copying the kept entries without recompressing them.
+	 * If {@code previous} is null, was made for different paths or {@code output} does not exist, all files are transformed.
+	 *
+	 * @param input    folder to load
+	 * @param output   jar or folder to save to
+	 * @param previous state returned by the previous call
+	 * @param changed  names of added, changed or removed files relative to {@code input}, or null to find them by comparing file sizes, modification times and hashes with {@code previous}
+	 * @return state to pass to the next call
+	 */
+	public IncrementalState transformIncremental(@NonNull Path input, @NonNull Path output, @Nullable IncrementalState previous, @Nullable Collection<String> changed) {
+		if (PathType.of(input) != PathType.FOLDER)
+			throw new IllegalArgumentException("Incremental input must be a folder: " + input);
+
+		val opened = openSearchPathCount();
+		try {
+			return transformIncrementalFiles(input, output, previous, changed);
+		} finally {
+			closeSearchPaths(opened);
+		}
+	}
+
+	private IncrementalState transformIncrementalFiles(Path input, Path output, @Nullable IncrementalState previous, @Nullable Collection<String> changed) {
+		val full = previous == null || !previous.isFor(input, output) || !Files.exists(output);
+		val files = new ConcurrentHashMap<String, IncrementalState.FileState>();
+		val toTransform = new TreeSet<String>();
+		val removed = new HashSet<String>();
+		try {
+			if (full) {
+				try (val stream = Files.walk(input)) {
+					stream.filter(Files::isRegularFile).forEach(it -> toTransform.add(relativeName(input, it)));
+				}
+			} else {
+				files.putAll(previous.getFiles());
+				if (changed != null) {
+					for (String name : changed) {
+						name = name.replace('\\', '/');
+						if (Files.isRegularFile(input.resolve(name)))
+							toTransform.add(name);
+						else
+							removed.add(name);
+					}
+				} else {
+					findChanges(input, previous, files, toTransform, removed);
+				}
+			}
+			removed.forEach(files::remove);
+
+			switch (PathType.of(output)) {
+				case JAR:
+					transformIncrementalJar(input, output, full, files, toTransform, removed);
+					break;
+				case FOLDER:
+					for (String name : removed)
+						Files.deleteIfExists(output.resolve(name));
+					transformFiles(input, files, toTransform, new FolderSink(output, true));
+					break;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		afterTransform.forEach(handler -> handler.accept(this));
+
+		return new IncrementalState(input, output, files);
+	}
+
+	private static String relativeName(Path input, Path file) {
+		return input.relativize(file).toString().replace('\\', '/');
+	}
+
+	private static void findChanges(Path input, IncrementalState previous, Map<String, IncrementalState.FileState> files, Set<String> toTransform, Set<String> removed) throws IOException {
+		val seen = new HashSet<String>();
+		try (val stream = Files.walk(input)) {
+			for (Path file : (Iterable<Path>) stream.filter(Files::isRegularFile)::iterator) {
+				val name = relativeName(input, file);
+				seen.add(name);
+				val old = previous.getFiles().get(name);
+				val size = Files.size(file);
+				val lastModified = Files.getLastModifiedTime(file).toMillis();
+				if (old != null && old.size == size && old.lastModified == lastModified)
+					continue;
+				if (old != null && old.size == size) {
+					// touched but not changed, only the modification time needs updating
+					val hash = HashUtil.sha256Hex(Files.readAllBytes(file));
+					if (hash.equals(old.hash)) {
+						files.put(name, new IncrementalState.FileState(size, lastModified, hash));
+						continue;
+					}
+				}
+				toTransform.add(name);
+			}
+		}
+		for (String name : previous.getFiles().keySet())
+			if (!seen.contains(name))
+				removed.add(name);
+	}
+
+	private void transformIncrementalJar(Path input, Path output, boolean full, Map<String, IncrementalState.FileState> files, Set<String> toTransform, Set<String> removed) throws IOException {
+		val temp = output.resolveSibling(output.getFileName() + ".tmp");
+		try {
+			try (val sink = new JarSink(temp)) {
+				if (!full) {
+					// not shared, so the old output is unmapped before it is replaced
+					try (val reader = ZipReader.openUnshared(output)) {
+						for (val entry : reader.getEntries())
+							if (!toTransform.contains(entry.getName()) && !removed.contains(entry.getName()))
+								sink.copyRaw(reader, entry);
+					}
+				}
+				transformFiles(input, files, toTransform, sink);
+			}
+			Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private void transformFiles(Path input, Map<String, IncrementalState.FileState> files, Set<String> names, EntrySink sink) throws IOException {
+		val pipeline = newPipeline(sink, null);
+		val searchPath = openSearchPath(input);
+		try {
+			for (String name : names) {
+				val file = input.resolve(name);
+				pipeline.submit(() -> {
+					try {
+						val lastModified = Files.getLastModifiedTime(file).toMillis();
+						val data = Files.readAllBytes(file);
+						files.put(name, new IncrementalState.FileState(data.length, lastModified, HashUtil.sha256Hex(data)));
+						return transformEntry(name, () -> data, searchPath, sink, null);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			}
+			pipeline.finish();
+		} finally {
+			pipeline.cancel();
+		}
+	}
+
+	private void loadFolder(Path input, @Nullable EntrySink sink) {
+		val pipeline = newPipeline(sink, null);
+		val searchPath = openSearchPath(input);
 		try {
-			val searchPath = ClassPath.of(classPath, input);
 			Files.walkFileTree(input, new SimpleFileVisitor<Path>() {
 				@Override
 				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
 					val relativeName = input.relativize(file).toString();
 
-					val supplier = transformBytes(() -> {
+					pipeline.submit(() -> transformEntry(relativeName, () -> {
 						try {
 							return Files.readAllBytes(file);
 						} catch (IOException e) {
 							throw new UncheckedIOException(e);
 						}
-					}, relativeName, searchPath);
-
-					saveTransformedResult(relativeName, supplier, saveTransformedResults);
+					}, searchPath, sink, null));
 
 					return FileVisitResult.CONTINUE;
 				}
 			});
+			pipeline.finish();
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
+		} finally {
+			pipeline.cancel();
 		}
 	}
 
-	private void loadJar(Path p, boolean saveTransformedResults) {
-		ZipEntry entry;
-		try (ZipInputStream is = new ZipInputStream(new BufferedInputStream(new FileInputStream(p.toFile())))) {
-			val searchPath = ClassPath.of(classPath, p);
-			while ((entry = is.getNextEntry()) != null) {
-				saveTransformedResult(entry.getName(), transformBytes(() -> StreamUtil.readFully(is), entry.getName(), searchPath), saveTransformedResults);
+	private void loadJar(Path p, @Nullable EntrySink sink) {
+		try (val reader = ZipReader.open(p)) {
+			val searchPath = openSearchPath(p);
+			val pipeline = newPipeline(sink, reader);
+			try {
+				val copyRaw = sink != null && sink.canCopyRaw();
+				for (val entry : reader.getEntries()) {
+					Supplier<byte[]> data = () -> {
+						try {
+							return reader.read(entry);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					};
+					pipeline.submit(() -> transformEntry(entry.getName(), data, searchPath, sink, copyRaw ? entry : null));
+				}
+				pipeline.finish();
+			} finally {
+				pipeline.cancel();
 			}
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
 	}
 
-	private void saveTransformedResult(String relativeName, Supplier<byte[]> supplier, boolean saveTransformedResults) {
-		if (saveTransformedResults)
-			transformedFiles.put(relativeName.replace('\\', '/'), supplier.get());
+	/**
+	 * @return {@link ClassPath} of the given input on top of {@link #classPath}, kept open until {@link #close()}
+	 */
+	private ClassPath openSearchPath(Path input) {
+		val searchPath = ClassPath.of(classPath, input);
+		synchronized (searchPaths) {
+			searchPaths.add(searchPath);
+		}
+		return searchPath;
 	}
 
-	private void saveFolder(Path output) {
-		transformedFiles.forEach(((fileName, bytes) -> {
-			Path outputFile = output.resolve(fileName);
-
+	private OrderedPipeline<TransformedEntry> newPipeline(@Nullable EntrySink sink, @Nullable ZipReader reader) {
+		return new OrderedPipeline<>(executor, maxInFlight, it -> {
+			if (sink == null)
+				return;
 			try {
-				if (Files.exists(outputFile)) {
-					throw new IOException("Output file already exists: " + outputFile);
-				}
-				Files.createDirectories(outputFile.getParent());
-				Files.write(outputFile, bytes);
+				if (it.data == null)
+					sink.copyRaw(Objects.requireNonNull(reader), Objects.requireNonNull(it.rawSource));
+				else
+					sink.write(it.name, it.data);
 			} catch (IOException e) {
 				throw new UncheckedIOException(e);
 			}
-		}));
+		});
+	}
+
+	/**
+	 * @param rawSource entry to copy without decompressing if the transformers do not change it
+	 */
+	private TransformedEntry transformEntry(String relativeName, Supplier<byte[]> data, ClassPath searchPath, @Nullable EntrySink sink, @Nullable ZipReader.Entry rawSource) {
+		val name = relativeName.replace('\\', '/');
+		val cache = transformCache;
+		if (sink != null && cache != null && mayTransform(relativeName))
+			return transformEntryCached(cache, name, relativeName, data, searchPath, rawSource);
+
+		val supplier = transformBytes(data, relativeName, searchPath);
+		if (sink == null)
+			return new TransformedEntry(name, null, null);
+		if (rawSource != null && supplier == data)
+			return new TransformedEntry(name, null, rawSource);
+		return new TransformedEntry(name, supplier.get(), null);
+	}
+
+	private TransformedEntry transformEntryCached(TransformCache cache, String name, String relativeName, Supplier<byte[]> data, ClassPath searchPath, @Nullable ZipReader.Entry rawSource) {
+		val input = data.get();
+		val key = cache.key(name, input);
+		byte[] output = cache.get(key, input);
+		if (output == null) {
+			Supplier<byte[]> inputSupplier = () -> input;
+			val supplier = transformBytes(inputSupplier, relativeName, searchPath);
+			output = supplier == inputSupplier ? input : supplier.get();
+			cache.put(key, input, output);
+		}
+		if (output == input && rawSource != null)
+			return new TransformedEntry(name, null, rawSource);
+		return new TransformedEntry(name, output, null);
+	}
+
+	private boolean mayTransform(String relativeName) {
+		if (!relativeName.endsWith(".class") && !relativeName.endsWith(".java"))
+			return false;
+		val className = JVMUtil.fileNameToClassName(relativeName);
+		return !className.endsWith(".package-info") && shouldTransform(className);
+	}
+
+	private void saveFolder(Path output) {
+		saveAll(new FolderSink(output));
 	}
 
 	private void saveJar(Path jar) {
-		try (ZipOutputStream os = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(jar.toFile())))) {
-			transformedFiles.forEach(((relativeName, bytes) -> {
-				try {
-					os.putNextEntry(new ZipEntry(relativeName));
-					os.write(bytes);
-					os.closeEntry();
-				} catch (IOException e) {
-					throw new UncheckedIOException(e);
-				}
-			}));
+		try (val sink = new JarSink(jar)) {
+			saveAll(sink);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
+	private void saveAll(EntrySink sink) {
+		transformedFiles.forEach(((relativeName, bytes) -> {
+			try {
+				sink.write(relativeName, bytes);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}));
+	}
+
 	public void clear() {
 		transformedFiles.clear();
 	}
 
+	/**
+	 * Releases the archives opened by previous loads. {@link ClassInfo}s from those loads may fail to read classes after this
+	 * <p>
+	 * This {@link JavaTransformer} can still be used, the next load opens its input again
+	 */
+	@Override
+	public void close() {
+		closeSearchPaths(0);
+	}
+
+	private int openSearchPathCount() {
+		synchronized (searchPaths) {
+			return searchPaths.size();
+		}
+	}
+
+	/**
+	 * Closes the search paths opened after the first {@code keep}
+	 */
+	private void closeSearchPaths(int keep) {
+		List<ClassPath> closing;
+		synchronized (searchPaths) {
+			val opened = searchPaths.subList(Math.min(keep, searchPaths.size()), searchPaths.size());
+			closing = new ArrayList<>(opened);
+			opened.clear();
+		}
+		for (ClassPath searchPath : closing)
+			searchPath.close();
+	}
+
 	public void addTransformer(@NonNull Transformer.TargetedTransformer t) {
 		if (transformers.contains(t)) {
 			throw new IllegalArgumentException("Transformer " + t + " has already been added");
@@ -228,12 +535,27 @@ public class JavaTransformer {
 		classTransformers.put(s, t);
 	}
 
+	/**
+	 * Adds a transformer which only runs on classes matching the filter. Classes which no transformer runs on are not parsed
+	 */
+	public void addTransformer(@NonNull ClassFilter filter, @NonNull Transformer t) {
+		if (filteredTransformers.contains(filter, t)) {
+			throw new IllegalArgumentException("Transformer " + t + " has already been added for filter " + filter);
+		}
+		filteredTransformers.add(filter, t);
+	}
+
 	public void addTransformer(@NonNull Transformer t) {
 		if (t instanceof Transformer.TargetedTransformer) {
 			addTransformer((Transformer.TargetedTransformer) t);
 			return;
 		}
 
+		if (t instanceof Transformer.FilteredTransformer) {
+			addTransformer(((Transformer.FilteredTransformer) t).getFilter(), t);
+			return;
+		}
+
 		if (transformers.contains(t)) {
 			throw new IllegalArgumentException("Transformer " + t + " has already been added");
 		}
@@ -247,12 +569,7 @@ public class JavaTransformer {
 		CachingSupplier<TypeDeclaration<?>> supplier = CachingSupplier.of(() -> {
 			byte[] bytes = data.get();
 
-			val parser = new JavaParser();
-			val result = parser.parse(ParseStart.COMPILATION_UNIT, provider(new ByteArrayInputStream(bytes), Charset.forName("UTF8")));
-			if (!result.isSuccessful()) {
-				throw new ParseProblemException(result.getProblems());
-			}
-			CompilationUnit cu = result.getResult().get();
+			CompilationUnit cu = Parsers.parse(new ByteArrayInputStream(bytes));
 
 			List<String> tried = new ArrayList<>();
 			String packageName = NodeUtil.qualifiedName(cu.getPackageDeclaration().get().getName());
@@ -271,24 +588,40 @@ public class JavaTransformer {
 				+ "\nClass data: " + new String(bytes, Charset.forName("UTF-8")));
 		});
 
-		transformClassInfo(new SourceInfo(supplier, name, classPath));
+		val info = new SourceInfo(supplier, name, classPath);
+		val applicable = transformersFor(name, () -> ClassFilters.headerOf(info, classPath));
+		if (applicable.isEmpty())
+			return data;
+		transformClassInfo(info, applicable);
 
 		return supplier.isCached() ? () -> supplier.get().getParentNode().get().toString().getBytes(Charset.forName("UTF-8")) : data;
 	}
 
 	public Supplier<byte[]> transformClass(@NonNull Supplier<byte[]> data, @NonNull String name) {
+		return transformClass(data, name, classPath);
+	}
+
+	/**
+	 * @param classPath used to look up supertypes when frames must be computed for changed methods
+	 */
+	public Supplier<byte[]> transformClass(@NonNull Supplier<byte[]> data, @NonNull String name, @NonNull ClassPath classPath) {
 		if (!shouldTransform(name))
 			return data;
 
+		val bytes = CachingSupplier.of(data);
+		val applicable = transformersFor(name, () -> ClassFilters.readHeader(bytes.get(), classPath));
+		if (applicable.isEmpty())
+			return data;
+
 		AsmUtil.Holder<ClassReader> readerHolder = new AsmUtil.Holder<>();
-		CachingSupplier<ClassNode> supplier = CachingSupplier.of(() -> AsmUtil.getClassNode(data.get(), readerHolder));
+		CachingSupplier<ClassNode> supplier = CachingSupplier.of(() -> AsmUtil.getClassNode(bytes.get(), readerHolder));
 
 		val filters = new HashMap<String, String>();
 
 		int flags_ = ClassWriter.COMPUTE_MAXS;
 		{
 			val byteCodeInfo = new ByteCodeInfo(supplier, name, filters);
-			transformClassInfo(byteCodeInfo);
+			transformClassInfo(byteCodeInfo, applicable);
 			if (byteCodeInfo.hasChangedMethodControlFlow) {
 				flags_ |= ClassWriter.COMPUTE_FRAMES;
 			}
@@ -301,20 +634,41 @@ public class JavaTransformer {
 		return () -> {
 			if (readerHolder.value == null)
 				throw new IllegalStateException();
-			FilteringClassWriter classWriter = new FilteringClassWriter(readerHolder.value, flags);
+			val node = supplier.get();
+			// filters must be applied to every method, so unchanged methods can only be copied as is without them.
+			// hasChangedMethodControlFlow can be set without marking which methods changed, then frames are computed for every method
+			if (filters.isEmpty() && node instanceof LazyClassNode && ((flags & ClassWriter.COMPUTE_FRAMES) == 0 || ((LazyClassNode) node).hasControlFlowChanges())) {
+				FilteringClassWriter classWriter = new FilteringClassWriter(readerHolder.value, ClassWriter.COMPUTE_MAXS, classPath);
+				((LazyClassNode) node).write(classWriter);
+				return classWriter.toByteArray();
+			}
+			FilteringClassWriter classWriter = new FilteringClassWriter(readerHolder.value, flags, classPath);
 			classWriter.filters.putAll(filters);
-			supplier.get().accept(classWriter);
+			node.accept(classWriter);
 			return classWriter.toByteArray();
 		};
 	}
 
-	private void transformClassInfo(ClassInfo editor) {
-		transformers.forEach((x) -> x.transform(editor));
-		classTransformers.get(editor.getName()).forEach((it) -> it.transform(editor));
+	private void transformClassInfo(ClassInfo editor, List<Transformer> applicable) {
+		applicable.forEach((x) -> x.transform(editor));
 	}
 
 	private boolean shouldTransform(String className) {
-		return !transformers.isEmpty() || !classTransformers.get(className).isEmpty();
+		return !transformers.isEmpty() || !classTransformers.get(className).isEmpty() || filteredTransformers.mayMatch(className);
+	}
+
+	/**
+	 * @param header only read if a filter can not be decided by the class name
+	 */
+	private List<Transformer> transformersFor(String className, Supplier<ClassHeader> header) {
+		val result = new ArrayList<Transformer>(transformers);
+		for (val entry : filteredTransformers.candidates(className)) {
+			val byName = entry.filter.matchesName(className);
+			if (Boolean.TRUE.equals(byName) || (byName == null && entry.filter.matches(header.get())))
+				result.add(entry.transformer);
+		}
+		result.addAll(classTransformers.get(className));
+		return result;
 	}
 
 	Supplier<byte[]> transformBytes(@Nullable Supplier<byte[]> dataSupplier, String relativeName, @Nullable ClassPath classPath) {
@@ -329,7 +683,7 @@ public class JavaTransformer {
 				return dataSupplier;
 
 			if (isClass)
-				return transformClass(dataSupplier, className);
+				return transformClass(dataSupplier, className, classPath == null ? this.classPath : classPath);
 
 			return transformJava(dataSupplier, className, classPath);
 		}
@@ -362,6 +716,59 @@ public class JavaTransformer {
 		this.classPath = classPath;
 	}
 
+	@Nullable
+	public Executor getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * Sets the executor used to transform entries in parallel when loading a jar or folder
+	 * <p>
+	 * Entries are still stored in the order they were read, so results do not depend on the number of threads used.
+	 * Transformers and the {@link ClassPath} must be safe to use from multiple threads when an executor is set.
+	 *
+	 * @param executor executor to run transformations on, or null to transform on the calling thread
+	 */
+	public void setExecutor(@Nullable Executor executor) {
+		this.executor = executor;
+	}
+
+	public boolean isStreaming() {
+		return this.streaming;
+	}
+
+	/**
+	 * @param streaming whether {@link #transform(Path, Path)} should write each entry to the output as soon as it is ready instead of collecting all entries in memory first
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	@Nullable
+	public TransformCache getTransformCache() {
+		return this.transformCache;
+	}
+
+	/**
+	 * @param transformCache cache of transformed entries used by {@link #load(Path)} and {@link #transform(Path, Path)}, or null to always run the transformers
+	 */
+	public void setTransformCache(@Nullable TransformCache transformCache) {
+		this.transformCache = transformCache;
+	}
+
+	public int getMaxInFlight() {
+		return this.maxInFlight;
+	}
+
+	/**
+	 * @param maxInFlight maximum number of entries which may be queued or being transformed at once when an executor is set
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException("maxInFlight must be at least 1, got " + maxInFlight);
+		this.maxInFlight = maxInFlight;
+	}
+
 	private enum PathType {
 		JAR,
 		FOLDER;
@@ -380,6 +787,149 @@ public class JavaTransformer {
 		}
 	}
 
+	@FunctionalInterface
+	private interface EntrySink {
+		void write(String relativeName, byte[] data) throws IOException;
+
+		/**
+		 * @return whether unchanged entries can be passed to {@link #copyRaw(ZipReader, ZipReader.Entry)} without reading them first
+		 */
+		default boolean canCopyRaw() {
+			return false;
+		}
+
+		default void copyRaw(ZipReader reader, ZipReader.Entry entry) throws IOException {
+			write(entry.getName(), reader.read(entry));
+		}
+	}
+
+	private static class FolderSink implements EntrySink {
+		private final Path output;
+		private final boolean replaceExisting;
+
+		FolderSink(Path output) {
+			this(output, false);
+		}
+
+		FolderSink(Path output, boolean replaceExisting) {
+			this.output = output;
+			this.replaceExisting = replaceExisting;
+		}
+
+		@Override
+		public void write(String relativeName, byte[] data) throws IOException {
+			Path outputFile = output.resolve(relativeName);
+
+			if (!replaceExisting && Files.exists(outputFile)) {
+				throw new IOException("Output file already exists: " + outputFile);
+			}
+			Files.createDirectories(outputFile.getParent());
+			Files.write(outputFile, data);
+		}
+	}
+
+	private static class JarSink implements EntrySink, Closeable {
+		private final ZipWriter writer;
+
+		JarSink(Path jar) throws IOException {
+			writer = ZipWriter.create(jar);
+		}
+
+		@Override
+		public void write(String relativeName, byte[] data) throws IOException {
+			writer.write(relativeName, data);
+		}
+
+		@Override
+		public boolean canCopyRaw() {
+			return true;
+		}
+
+		@Override
+		public void copyRaw(ZipReader reader, ZipReader.Entry entry) throws IOException {
+			writer.copyRaw(reader, entry);
+		}
+
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+	}
+
+	@RequiredArgsConstructor
+	private static class TransformedEntry {
+		final String name;
+		@Nullable
+		final byte[] data;
+		@Nullable
+		final ZipReader.Entry rawSource;
+	}
+
+	/**
+	 * Transformers added with a {@link ClassFilter}, indexed by the packages their filters are limited to
+	 */
+	private static class FilteredTransformers {
+		private final List<FilteredEntry> unindexed = new ArrayList<>();
+		private final Map<String, List<FilteredEntry>> byPackage = new HashMap<>();
+		private int count;
+
+		void add(ClassFilter filter, Transformer transformer) {
+			val entry = new FilteredEntry(count++, filter, transformer);
+			val packages = filter.getPackages();
+			if (packages == null) {
+				unindexed.add(entry);
+				return;
+			}
+			for (String packageName : packages)
+				byPackage.computeIfAbsent(packageName, k -> new ArrayList<>()).add(entry);
+		}
+
+		boolean contains(ClassFilter filter, Transformer transformer) {
+			val entries = new ArrayList<FilteredEntry>(unindexed);
+			byPackage.values().forEach(entries::addAll);
+			return entries.stream().anyMatch(it -> it.filter.equals(filter) && it.transformer.equals(transformer));
+		}
+
+		boolean mayMatch(String className) {
+			for (val entry : candidates(className))
+				if (!Boolean.FALSE.equals(entry.filter.matchesName(className)))
+					return true;
+			return false;
+		}
+
+		/**
+		 * @return entries which may match the class, in the order they were added
+		 */
+		List<FilteredEntry> candidates(String className) {
+			if (count == 0)
+				return Collections.emptyList();
+
+			val result = new ArrayList<FilteredEntry>(unindexed);
+			if (byPackage.isEmpty())
+				return result;
+
+			String packageName = className;
+			int dot;
+			while ((dot = packageName.lastIndexOf('.')) != -1) {
+				packageName = packageName.substring(0, dot);
+				val entries = byPackage.get(packageName);
+				if (entries != null)
+					for (val entry : entries)
+						if (!result.contains(entry))
+							result.add(entry);
+			}
+			result.sort(Comparator.comparingInt(it -> it.order));
+			return result;
+		}
+	}
+
+	@RequiredArgsConstructor
+	private static class FilteredEntry {
+		final int order;
+		final ClassFilter filter;
+		final Transformer transformer;
+	}
+
 	private static class SimpleMultiMap<K, T> {
 		private final Map<K, List<T>> map = new HashMap<>();
 
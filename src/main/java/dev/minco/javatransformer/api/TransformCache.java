@@ -0,0 +1,244 @@
+package dev.minco.javatransformer.api;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import lombok.NonNull;
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+
+import dev.minco.javatransformer.internal.util.HashUtil;
+
+/**
+ * Content addressed cache of transformed entries, stored in a local directory
+ * <p>
+ * Entries are keyed by a hash of the fingerprint, the entry name and the entry bytes. The fingerprint must change whenever the
+ * registered {@link Transformer}s, their options or anything else they depend on changes, such as the {@link ClassPath}.
+ * Transformers are not called for cached entries, so they should not have side effects other than changing the entry.
+ * <p>
+ * When the directory grows larger than the maximum size the least recently used entries are removed.
+ * A single directory may be shared between processes.
+ */
+public final class TransformCache {
+	private static final String SUFFIX = ".entry";
+	private static final byte UNCHANGED = 0;
+	private static final byte CHANGED = 1;
+
+	private final Path directory;
+	private final byte[] fingerprint;
+	private final long maxSize;
+	private final AtomicLong size = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param directory   directory to store entries in, created if it does not exist
+	 * @param fingerprint identifies the transformers and options used
+	 * @param maxSize     maximum size of the directory in bytes
+	 */
+	public TransformCache(@NonNull Path directory, @NonNull String fingerprint, long maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("maxSize must be at least 1, got " + maxSize);
+		this.directory = directory;
+		this.fingerprint = fingerprint.getBytes(StandardCharsets.UTF_8);
+		this.maxSize = maxSize;
+		try {
+			Files.createDirectories(directory);
+			try (val files = entryFiles()) {
+				size.set(files.mapToLong(TransformCache::sizeOf).sum());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return approximate size of the cached entries in bytes
+	 */
+	public long getSize() {
+		return size.get();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the key for an entry with the given name and contents
+	 */
+	public String key(@NonNull String name, @NonNull byte[] data) {
+		val digest = HashUtil.sha256();
+		digest.update(fingerprint);
+		digest.update((byte) 0);
+		digest.update(name.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(data);
+		return HashUtil.toHex(digest.digest());
+	}
+
+	/**
+	 * @param input the contents the key was created from
+	 * @return the transformed contents, {@code input} itself if the transformers did not change it, or null if the entry is not cached
+	 */
+	@Nullable
+	public byte[] get(@NonNull String key, @NonNull byte[] input) {
+		val file = fileFor(key);
+		byte[] stored;
+		try {
+			stored = Files.readAllBytes(file);
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (NoSuchFileException e) {
+			misses.incrementAndGet();
+			return null;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		if (stored.length == 1 && stored[0] == UNCHANGED) {
+			hits.incrementAndGet();
+			return input;
+		}
+		if (stored.length > 0 && stored[0] == CHANGED) {
+			hits.incrementAndGet();
+			return Arrays.copyOfRange(stored, 1, stored.length);
+		}
+
+		// empty, truncated or otherwise damaged, eg by a process killed while writing to the directory
+		misses.incrementAndGet();
+		try {
+			if (Files.deleteIfExists(file))
+				size.addAndGet(-stored.length);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the result of transforming an entry, evicting the least recently used entries if the cache is too large
+	 *
+	 * @param output the transformed contents, or {@code input} itself if the transformers did not change it
+	 */
+	public void put(@NonNull String key, @NonNull byte[] input, @NonNull byte[] output) {
+		val unchanged = output == input || Arrays.equals(output, input);
+		val stored = new byte[unchanged ? 1 : output.length + 1];
+		stored[0] = unchanged ? UNCHANGED : CHANGED;
+		if (!unchanged)
+			System.arraycopy(output, 0, stored, 1, output.length);
+
+		val file = fileFor(key);
+		long replaced;
+		try {
+			Files.createDirectories(file.getParent());
+			val temp = Files.createTempFile(file.getParent(), key, ".tmp");
+			try {
+				Files.write(temp, stored);
+				// another thread or process may have stored the same entry since it was looked up
+				replaced = sizeOf(file);
+				try {
+					Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		if (size.addAndGet(stored.length - replaced) > maxSize)
+			evict();
+	}
+
+	/**
+	 * Removes all cached entries
+	 */
+	public synchronized void clear() {
+		try (val files = entryFiles()) {
+			for (Path file : files.collect(Collectors.toList()))
+				Files.deleteIfExists(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		size.set(0);
+	}
+
+	private synchronized void evict() {
+		if (size.get() <= maxSize)
+			return;
+
+		// evict down to 90% of the limit so every put after the limit is reached does not rescan the directory
+		val target = maxSize - maxSize / 10;
+		try {
+			ArrayList<Path> files;
+			try (val stream = entryFiles()) {
+				files = stream.collect(Collectors.toCollection(ArrayList::new));
+			}
+			val lastModified = files.stream().collect(Collectors.toMap(it -> it, TransformCache::lastModified));
+			files.sort(Comparator.comparingLong(lastModified::get));
+
+			long total = files.stream().mapToLong(TransformCache::sizeOf).sum();
+			for (Path file : files) {
+				if (total <= target)
+					break;
+				val fileSize = sizeOf(file);
+				Files.deleteIfExists(file);
+				total -= fileSize;
+			}
+			size.set(total);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Path fileFor(String key) {
+		return directory.resolve(key.substring(0, 2)).resolve(key + SUFFIX);
+	}
+
+	private Stream<Path> entryFiles() throws IOException {
+		return Files.walk(directory, 2).filter(it -> it.getFileName().toString().endsWith(SUFFIX));
+	}
+
+	private static long sizeOf(Path file) {
+		try {
+			return Files.size(file);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	private static long lastModified(Path file) {
+		try {
+			return Files.getLastModifiedTime(file).toMillis();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+}
@@ -14,4 +14,11 @@ public interface Transformer {
 		 */
 		Collection<String> getTargetClasses();
 	}
+
+	interface FilteredTransformer extends Transformer {
+		/**
+		 * @return Filter selecting the classes which this transformer will run on
+		 */
+		ClassFilter getFilter();
+	}
 }
@@ -0,0 +1,45 @@
+package dev.minco.javatransformer.api;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Supertypes and subtypes of the classes in a {@link ClassPath}, see {@link ClassPath#getHierarchy()}
+ * <p>
+ * Class names are in internal format: {@code package1/package2/ClassName}, {@code package1/package2/ClassName$InnerClass}
+ */
+public interface TypeHierarchy {
+	/**
+	 * @return all superclasses and interfaces of the given class, superclass first. Interfaces include {@code java/lang/Object}
+	 * @throws TypeNotPresentException if the class, or one of its supertypes, is not in the {@link ClassPath}
+	 */
+	@Nonnull
+	Set<String> getSuperTypes(@Nonnull String name);
+
+	/**
+	 * @return all interfaces implemented by the given class or extended by the given interface, directly or through its supertypes
+	 * @throws TypeNotPresentException if the class, or one of its supertypes, is not in the {@link ClassPath}
+	 */
+	@Nonnull
+	Set<String> getAllInterfaces(@Nonnull String name);
+
+	/**
+	 * @return all classes and interfaces in the {@link ClassPath} which extend or implement the given type, directly or indirectly
+	 */
+	@Nonnull
+	Set<String> getSubtypes(@Nonnull String name);
+
+	/**
+	 * @return all classes, not interfaces, in the {@link ClassPath} which extend or implement the given type, directly or indirectly
+	 */
+	@Nonnull
+	List<String> getImplementors(@Nonnull String name);
+
+	/**
+	 * @return whether {@code type} is {@code possibleSuperType} or one of its subtypes
+	 * @throws TypeNotPresentException if {@code type}, or one of its supertypes, is not in the {@link ClassPath}
+	 */
+	boolean isAssignableFrom(@Nonnull String possibleSuperType, @Nonnull String type);
+}
@@ -80,7 +80,7 @@ class AsmCodeFragmentGenerator implements Opcodes {
 			boolean canReturn = false;
 			boolean canFallThrough;
 
-			val list = containingMethodNodeInfo.node.instructions;
+			val list = containingMethodNodeInfo.getNode().instructions;
 			while (true) {
 				boolean canFallThroughThisInstruction = false;
 				// must be reachable
@@ -133,7 +133,7 @@ class AsmCodeFragmentGenerator implements Opcodes {
 		List<IntermediateValue> getTypes(boolean inputs, boolean stack, boolean locals) {
 			val first = getFirstInstruction();
 			val last = getLastInstruction();
-			val node = containingMethodNodeInfo.node;
+			val node = containingMethodNodeInfo.getNode();
 			val insnList = node.instructions;
 			val frames = containingMethodNodeInfo.getStackFrames();
 			val startIndex = insnList.indexOf(first);
@@ -192,7 +192,7 @@ class AsmCodeFragmentGenerator implements Opcodes {
 				val ls = lastFrame == null ? 0 : lastFrame.getStackSize();
 
 				if (firstFrame == null && lastFrame == null) {
-					DebugPrinter.printByteCode(containingMethodNodeInfo.node, "unexpected_null_frame");
+					DebugPrinter.printByteCode(containingMethodNodeInfo.getNode(), "unexpected_null_frame");
 					throw new IllegalStateException("frames were unreachable " + Arrays.toString(frames));
 				}
 
@@ -229,7 +229,7 @@ class AsmCodeFragmentGenerator implements Opcodes {
 			AsmCodeFragment fragment = (AsmCodeFragment) fragmentOfAnyType;
 
 			val containingMethodNodeInfo = this.containingMethodNodeInfo;
-			val containingMethodNode = containingMethodNodeInfo.node;
+			val containingMethodNode = containingMethodNodeInfo.getNode();
 			val containingList = containingMethodNode.instructions;
 
 			val first = getFirstInstruction();
@@ -241,8 +241,8 @@ class AsmCodeFragmentGenerator implements Opcodes {
 
 			InsnList insertInstructions;
 			{
-				insertInstructions = Cloner.clone(fragment.containingMethodNodeInfo.node.instructions, fragment.getFirstInstruction(), fragment.getLastInstruction());
-				val clonedMethod = Cloner.deepClone(fragment.containingMethodNodeInfo.node);
+				insertInstructions = Cloner.clone(fragment.containingMethodNodeInfo.getNode().instructions, fragment.getFirstInstruction(), fragment.getLastInstruction());
+				val clonedMethod = Cloner.deepClone(fragment.containingMethodNodeInfo.getNode());
 				clonedMethod.instructions = insertInstructions;
 				clonedMethod.name += "_mod";
 				// clonedMethod.maxLocals += 20;
@@ -311,11 +311,11 @@ class AsmCodeFragmentGenerator implements Opcodes {
 			if (CollectionUtil.equals(inputTypes, outputTypes, AsmCodeFragmentGenerator::ivEqualIgnoringStackOffset))
 				return;
 
-			val node = insertFragment.containingMethodNodeInfo.node;
+			val node = insertFragment.containingMethodNodeInfo.getNode();
 			val insns = node.instructions;
 			val movedInputTypes = new ArrayList<IntermediateValue>(existingInputTypes);
 			val varInsns = new InsnList();
-			int localIndex = containingMethodNodeInfo.node.maxLocals;
+			int localIndex = containingMethodNodeInfo.getNode().maxLocals;
 			{
 				int lastStackIndex = Integer.MIN_VALUE;
 				ListIterator<IntermediateValue> $ivs = movedInputTypes.listIterator();
@@ -332,7 +332,7 @@ class AsmCodeFragmentGenerator implements Opcodes {
 					System.out.println("added local " + localIndex + " for " + iv);
 					localIndex++;
 				}
-				containingMethodNodeInfo.node.maxLocals = localIndex;
+				containingMethodNodeInfo.getNode().maxLocals = localIndex;
 			}
 
 			// at this point, the existing input types are all local variables
@@ -363,7 +363,7 @@ class AsmCodeFragmentGenerator implements Opcodes {
 				}
 			}
 
-			rebaseLocals(locals, insertFragment, containingMethodNodeInfo.node.maxLocals);
+			rebaseLocals(locals, insertFragment, containingMethodNodeInfo.getNode().maxLocals);
 			insns.insert(varInsns);
 
 			// insns.insert(lastVarAdded);
@@ -385,7 +385,7 @@ class AsmCodeFragmentGenerator implements Opcodes {
 			System.out.println(String.join("\n", inputTypes.stream().map(IntermediateValue::toString).collect(Collectors.toList())));
 
 			val containingMethodNodeInfo = fragment.containingMethodNodeInfo;
-			val insns = containingMethodNodeInfo.node.instructions;
+			val insns = containingMethodNodeInfo.getNode().instructions;
 			if (options.convertReturnToOutputTypes) {
 				LabelNode endLabel = null;
 				val last = insns.getLast();
@@ -462,7 +462,7 @@ class AsmCodeFragmentGenerator implements Opcodes {
 			if (offset == 0)
 				return;
 			val containingMethodNodeInfo = fragment.containingMethodNodeInfo;
-			val node = containingMethodNodeInfo.node;
+			val node = containingMethodNodeInfo.getNode();
 			node.maxLocals += offset;
 			AbstractInsnNode current = node.instructions.getFirst();
 			val last = node.instructions.getLast();
@@ -542,20 +542,20 @@ class AsmCodeFragmentGenerator implements Opcodes {
 
 			set.set(i, i + containingMethodNodeInfo.getParameters().size());
 
-			if (i > containingMethodNodeInfo.node.maxLocals)
+			if (i > containingMethodNodeInfo.getNode().maxLocals)
 				throw new IllegalStateException();
 		}
 
 		@NonNull
 		@Override
 		public AbstractInsnNode getFirstInstruction() {
-			return containingMethodNodeInfo.node.instructions.getFirst();
+			return containingMethodNodeInfo.getNode().instructions.getFirst();
 		}
 
 		@NonNull
 		@Override
 		public AbstractInsnNode getLastInstruction() {
-			return containingMethodNodeInfo.node.instructions.getLast();
+			return containingMethodNodeInfo.getNode().instructions.getLast();
 		}
 	}
 
@@ -1,16 +1,22 @@
 package dev.minco.javatransformer.internal;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.SneakyThrows;
+import lombok.ToString;
 import lombok.val;
 
 import org.objectweb.asm.tree.ClassNode;
@@ -32,6 +38,7 @@ import dev.minco.javatransformer.internal.asm.CombinedAnalyzer;
 import dev.minco.javatransformer.internal.asm.CombinedInterpreter;
 import dev.minco.javatransformer.internal.asm.CombinedValue;
 import dev.minco.javatransformer.internal.asm.FilteringClassWriter;
+import dev.minco.javatransformer.internal.asm.LazyClassNode;
 import dev.minco.javatransformer.internal.util.AnnotationParser;
 import dev.minco.javatransformer.internal.util.CachingSupplier;
 import dev.minco.javatransformer.internal.util.Cloner;
@@ -40,7 +47,15 @@ import dev.minco.javatransformer.internal.util.CollectionUtil;
 @Data
 @SuppressWarnings("unchecked")
 public class ByteCodeInfo implements ClassInfo {
+	/**
+	 * Method code in this node may not have been read yet, see {@link #loadCode(MethodNode)}
+	 */
+	@Getter(AccessLevel.NONE)
 	private final Supplier<ClassNode> node;
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private final Supplier<ClassNode> nodeWithCode = this::getNodeWithCode;
 	@Getter(lazy = true)
 	private final List<Annotation> annotations = getAnnotationsInternal();
 	public boolean hasChangedMethodControlFlow;
@@ -48,6 +63,25 @@ public class ByteCodeInfo implements ClassInfo {
 	private String className;
 	@NonNull
 	private Map<String, String> filters;
+	/**
+	 * Wrappers are reused for each node so their parsed descriptors, code fragments and stack frames are kept between lookups
+	 */
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private final Map<MethodNode, MethodNodeInfo> methodInfos = new IdentityHashMap<>();
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private final Map<FieldNode, FieldNodeInfo> fieldInfos = new IdentityHashMap<>();
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private final MemberIndex<MethodInfo> methodIndex = new MemberIndex<>(this::getMethods);
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private final MemberIndex<FieldInfo> fieldIndex = new MemberIndex<>(this::getFields);
 
 	@Override
 	public String getName() {
@@ -74,6 +108,7 @@ public class ByteCodeInfo implements ClassInfo {
 		MethodNode node;
 		if (method instanceof MethodNodeInfo) {
 			val orig = ((MethodNodeInfo) method);
+			orig.loadCode();
 			node = Cloner.clone(orig.node);
 			FilteringClassWriter.addFilter(filters, orig.getClassInfo().getName(), getName());
 		} else {
@@ -84,6 +119,7 @@ public class ByteCodeInfo implements ClassInfo {
 			info.setAll(method);
 		}
 		this.node.get().methods.add(node);
+		methodIndex.add(methodInfo(node));
 	}
 
 	public void add(FieldInfo field) {
@@ -96,6 +132,7 @@ public class ByteCodeInfo implements ClassInfo {
 			nodeInfo.setAll(field);
 		}
 		this.node.get().fields.add(node);
+		fieldIndex.add(fieldInfo(node));
 	}
 
 	@Override
@@ -105,7 +142,10 @@ public class ByteCodeInfo implements ClassInfo {
 		if (methodNodeInfo == null)
 			throw new TransformationException("Method " + method + " can not be removed as it is not present");
 
-		node.get().methods.remove(methodNodeInfo.node);
+		if (node.get().methods.remove(methodNodeInfo.node)) {
+			methodIndex.remove(methodInfo(methodNodeInfo.node));
+			methodInfos.remove(methodNodeInfo.node);
+		}
 	}
 
 	@Override
@@ -115,7 +155,42 @@ public class ByteCodeInfo implements ClassInfo {
 		if (fieldNodeInfo == null)
 			throw new TransformationException("Field " + field + " can not be removed as it is not present");
 
-		node.get().fields.remove(fieldNodeInfo.node);
+		if (node.get().fields.remove(fieldNodeInfo.node)) {
+			fieldIndex.remove(fieldInfo(fieldNodeInfo.node));
+			fieldInfos.remove(fieldNodeInfo.node);
+		}
+	}
+
+	@Nullable
+	@Override
+	public MethodInfo get(MethodInfo like) {
+		for (MethodInfo methodInfo : methodIndex.named(like.getName()))
+			if (like.similar(methodInfo))
+				return methodInfo;
+		return null;
+	}
+
+	@Nullable
+	@Override
+	public FieldInfo get(FieldInfo like) {
+		for (FieldInfo fieldInfo : fieldIndex.named(like.getName()))
+			if (like.similar(fieldInfo))
+				return fieldInfo;
+		return null;
+	}
+
+	/**
+	 * @param descriptor method descriptor, for example {@code (Ljava/lang/String;)V}
+	 * @return the method with the given name and descriptor, or null if there is no such method
+	 */
+	@Nullable
+	public MethodNodeInfo getMethod(String name, String descriptor) {
+		for (MethodInfo methodInfo : methodIndex.named(name)) {
+			val method = ((MethodNodeInfo) methodInfo).node;
+			if (method.name.equals(name) && method.desc.equals(descriptor))
+				return (MethodNodeInfo) methodInfo;
+		}
+		return null;
 	}
 
 	@Override
@@ -133,11 +208,19 @@ public class ByteCodeInfo implements ClassInfo {
 	}
 
 	public Stream<MethodInfo> getMethods() {
-		return node.get().methods.stream().map(MethodNodeInfo::new);
+		return node.get().methods.stream().map(this::methodInfo);
 	}
 
 	public Stream<FieldInfo> getFields() {
-		return node.get().fields.stream().map(FieldNodeInfo::new);
+		return node.get().fields.stream().map(this::fieldInfo);
+	}
+
+	private MethodNodeInfo methodInfo(MethodNode method) {
+		return methodInfos.computeIfAbsent(method, MethodNodeInfo::new);
+	}
+
+	private FieldNodeInfo fieldInfo(FieldNode field) {
+		return fieldInfos.computeIfAbsent(field, FieldNodeInfo::new);
 	}
 
 	private List<Annotation> getAnnotationsInternal() {
@@ -152,6 +235,30 @@ public class ByteCodeInfo implements ClassInfo {
 		return stream.collect(Collectors.toList());
 	}
 
+	/**
+	 * @return the class node, with the code of every method read so it can be changed directly. Members added to or removed from the node
+	 * directly are seen by {@link #get(MethodInfo)} and {@link #get(FieldInfo)} after the next call to {@link Supplier#get()}
+	 */
+	public Supplier<ClassNode> getNode() {
+		return nodeWithCode;
+	}
+
+	private ClassNode getNodeWithCode() {
+		// callers may add or remove members on the node directly
+		methodIndex.invalidate();
+		fieldIndex.invalidate();
+		val classNode = node.get();
+		if (classNode instanceof LazyClassNode)
+			((LazyClassNode) classNode).loadAllCode();
+		return classNode;
+	}
+
+	private void loadCode(MethodNode method) {
+		val classNode = node.get();
+		if (classNode instanceof LazyClassNode)
+			((LazyClassNode) classNode).loadCode(method);
+	}
+
 	MethodNodeInfo wrap(MethodNode node) {
 		return new MethodNodeInfo(node);
 	}
@@ -187,6 +294,8 @@ public class ByteCodeInfo implements ClassInfo {
 		@Override
 		public void setName(String name) {
 			node.name = name;
+			if (fieldInfos.get(node) == this)
+				fieldIndex.invalidate();
 		}
 
 		@Override
@@ -234,6 +343,12 @@ public class ByteCodeInfo implements ClassInfo {
 	}
 
 	public class MethodNodeInfo implements MethodInfo {
+		/**
+		 * The code of this method may not have been read yet, call {@link #loadCode()} before accessing it directly
+		 *
+		 * @deprecated use {@link #getNode()}, which reads the code first
+		 */
+		@Deprecated
 		public final MethodNode node;
 		private final CachingSupplier<Frame<CombinedValue>[]> stackFrames;
 		private final CachingSupplier<MethodDescriptor> descriptor;
@@ -251,7 +366,10 @@ public class ByteCodeInfo implements ClassInfo {
 						"\n\tsignature:" + node.signature, e);
 				}
 			});
-			codeFragment = CachingSupplier.of(() -> new AsmCodeFragmentGenerator.MethodNodeInfoCodeFragment(this));
+			codeFragment = CachingSupplier.of(() -> {
+				loadCode();
+				return new AsmCodeFragmentGenerator.MethodNodeInfoCodeFragment(this);
+			});
 			stackFrames = CachingSupplier.of(this::analyzeStackFrames);
 		}
 
@@ -273,6 +391,8 @@ public class ByteCodeInfo implements ClassInfo {
 		@Override
 		public void setName(String name) {
 			node.name = name;
+			if (methodInfos.get(node) == this)
+				methodIndex.invalidate();
 		}
 
 		@Override
@@ -330,6 +450,7 @@ public class ByteCodeInfo implements ClassInfo {
 		@Override
 		@SuppressWarnings("MethodDoesntCallSuperMethod")
 		public MethodInfo clone() {
+			loadCode();
 			return new MethodNodeInfo(Cloner.clone(node));
 		}
 
@@ -344,12 +465,31 @@ public class ByteCodeInfo implements ClassInfo {
 
 		@SneakyThrows
 		private Frame<CombinedValue>[] analyzeStackFrames() {
-			return CombinedAnalyzer.analyze(new CombinedInterpreter(), getClassInfo().getNode().get().name, node);
+			loadCode();
+			return CombinedAnalyzer.analyze(new CombinedInterpreter(), ByteCodeInfo.this.node.get().name, node);
+		}
+
+		/**
+		 * @return the method node, with its code read so it can be changed directly
+		 */
+		public MethodNode getNode() {
+			loadCode();
+			return node;
+		}
+
+		/**
+		 * Reads the code of this method if it has not been read yet
+		 */
+		public void loadCode() {
+			ByteCodeInfo.this.loadCode(node);
 		}
 
 		public void markCodeDirty() {
 			stackFrames.set(null);
 			hasChangedMethodControlFlow = true;
+			val classNode = ByteCodeInfo.this.node.get();
+			if (classNode instanceof LazyClassNode)
+				((LazyClassNode) classNode).markControlFlowChanged(node);
 		}
 	}
 }
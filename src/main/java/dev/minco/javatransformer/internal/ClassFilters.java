@@ -0,0 +1,294 @@
+package dev.minco.javatransformer.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import lombok.EqualsAndHashCode;
+import lombok.val;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+import dev.minco.javatransformer.api.Annotation;
+import dev.minco.javatransformer.api.ClassFilter;
+import dev.minco.javatransformer.api.ClassHeader;
+import dev.minco.javatransformer.api.ClassInfo;
+import dev.minco.javatransformer.api.ClassPath;
+import dev.minco.javatransformer.api.Type;
+
+/**
+ * Implementations of {@link ClassFilter}. Filters with the same arguments are equal, so adding the same filtered transformer twice is detected
+ */
+public final class ClassFilters {
+	/**
+	 * Reads the header of a class file without visiting its members' contents
+	 */
+	public static ClassHeader readHeader(byte[] data, @Nullable ClassPath classPath) {
+		val reader = new ClassReader(data);
+		val annotations = new ArrayList<String>();
+		reader.accept(new ClassVisitor(Opcodes.ASM9) {
+			@Override
+			public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+				annotations.add(new Type(descriptor).getClassName());
+				return null;
+			}
+		}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+		val interfaces = new ArrayList<String>();
+		for (String itf : reader.getInterfaces())
+			interfaces.add(itf.replace('/', '.'));
+		val superName = reader.getSuperName();
+		return new ClassHeader(reader.getClassName().replace('/', '.'), superName == null ? null : superName.replace('/', '.'), interfaces, annotations, classPath);
+	}
+
+	public static ClassHeader headerOf(ClassInfo info, @Nullable ClassPath classPath) {
+		val superType = info.getSuperType();
+		val interfaces = new ArrayList<String>();
+		for (Type type : info.getInterfaceTypes())
+			interfaces.add(type.getClassName());
+		val annotations = new ArrayList<String>();
+		for (Annotation annotation : info.getAnnotations())
+			annotations.add(annotation.type.getClassName());
+		return new ClassHeader(info.getName(), superType == null ? null : superType.getClassName(), interfaces, annotations, classPath);
+	}
+
+	@EqualsAndHashCode
+	public static final class InPackage implements ClassFilter {
+		private final String packageName;
+
+		public InPackage(String packageName) {
+			this.packageName = packageName;
+		}
+
+		@Override
+		public boolean matches(@Nonnull ClassHeader header) {
+			return Boolean.TRUE.equals(matchesName(header.getName()));
+		}
+
+		@Override
+		public Boolean matchesName(@Nonnull String className) {
+			return packageName.isEmpty() || className.startsWith(packageName + '.');
+		}
+
+		@Nullable
+		@Override
+		public Collection<String> getPackages() {
+			return packageName.isEmpty() ? null : Collections.singletonList(packageName);
+		}
+
+		@Override
+		public String toString() {
+			return "inPackage(" + packageName + ')';
+		}
+	}
+
+	public static final class Named implements ClassFilter {
+		private final Pattern pattern;
+		@Nullable
+		private final String packageName;
+
+		public Named(Pattern pattern, @Nullable String packageName) {
+			this.pattern = pattern;
+			this.packageName = packageName;
+		}
+
+		public static Named glob(String glob) {
+			val regex = new StringBuilder();
+			int literalPrefix = -1;
+			for (int i = 0; i < glob.length(); i++) {
+				char c = glob.charAt(i);
+				if (c == '*' || c == '?') {
+					if (literalPrefix == -1)
+						literalPrefix = i;
+					if (c == '?')
+						regex.append("[^.]");
+					else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+						regex.append(".*");
+						i++;
+					} else
+						regex.append("[^.]*");
+				} else {
+					regex.append(Pattern.quote(String.valueOf(c)));
+				}
+			}
+
+			val prefix = literalPrefix == -1 ? glob : glob.substring(0, literalPrefix);
+			val lastDot = prefix.lastIndexOf('.');
+			return new Named(Pattern.compile(regex.toString()), lastDot <= 0 ? null : prefix.substring(0, lastDot));
+		}
+
+		@Override
+		public boolean matches(@Nonnull ClassHeader header) {
+			return matchesName(header.getName());
+		}
+
+		@Override
+		public Boolean matchesName(@Nonnull String className) {
+			return pattern.matcher(className).matches();
+		}
+
+		@Nullable
+		@Override
+		public Collection<String> getPackages() {
+			return packageName == null ? null : Collections.singletonList(packageName);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o)
+				return true;
+			if (!(o instanceof Named))
+				return false;
+			val other = (Named) o;
+			return pattern.pattern().equals(other.pattern.pattern()) && pattern.flags() == other.pattern.flags() && Objects.equals(packageName, other.packageName);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(pattern.pattern(), pattern.flags(), packageName);
+		}
+
+		@Override
+		public String toString() {
+			return "named(" + pattern + ')';
+		}
+	}
+
+	@EqualsAndHashCode
+	public static final class AnnotatedWith implements ClassFilter {
+		private final String annotation;
+
+		public AnnotatedWith(String annotation) {
+			this.annotation = annotation;
+		}
+
+		@Override
+		public boolean matches(@Nonnull ClassHeader header) {
+			return header.getAnnotations().contains(annotation);
+		}
+
+		@Override
+		public String toString() {
+			return "annotatedWith(" + annotation + ')';
+		}
+	}
+
+	@EqualsAndHashCode
+	public static final class SubtypeOf implements ClassFilter {
+		private final String superType;
+
+		public SubtypeOf(String superType) {
+			this.superType = superType;
+		}
+
+		@Override
+		public boolean matches(@Nonnull ClassHeader header) {
+			return header.isSubtypeOf(superType);
+		}
+
+		@Nullable
+		@Override
+		public Boolean matchesName(@Nonnull String className) {
+			return className.equals(superType) ? Boolean.TRUE : null;
+		}
+
+		@Override
+		public String toString() {
+			return "extendsOrImplements(" + superType + ')';
+		}
+	}
+
+	@EqualsAndHashCode
+	public static final class And implements ClassFilter {
+		private final ClassFilter first;
+		private final ClassFilter second;
+
+		public And(ClassFilter first, ClassFilter second) {
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public boolean matches(@Nonnull ClassHeader header) {
+			return first.matches(header) && second.matches(header);
+		}
+
+		@Nullable
+		@Override
+		public Boolean matchesName(@Nonnull String className) {
+			val a = first.matchesName(className);
+			if (Boolean.FALSE.equals(a))
+				return false;
+			val b = second.matchesName(className);
+			if (Boolean.FALSE.equals(b))
+				return false;
+			return a == null || b == null ? null : Boolean.TRUE;
+		}
+
+		@Nullable
+		@Override
+		public Collection<String> getPackages() {
+			val packages = first.getPackages();
+			return packages != null ? packages : second.getPackages();
+		}
+
+		@Override
+		public String toString() {
+			return "(" + first + " and " + second + ')';
+		}
+	}
+
+	@EqualsAndHashCode
+	public static final class Or implements ClassFilter {
+		private final ClassFilter first;
+		private final ClassFilter second;
+
+		public Or(ClassFilter first, ClassFilter second) {
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public boolean matches(@Nonnull ClassHeader header) {
+			return first.matches(header) || second.matches(header);
+		}
+
+		@Nullable
+		@Override
+		public Boolean matchesName(@Nonnull String className) {
+			val a = first.matchesName(className);
+			if (Boolean.TRUE.equals(a))
+				return true;
+			val b = second.matchesName(className);
+			if (Boolean.TRUE.equals(b))
+				return true;
+			return a == null || b == null ? null : Boolean.FALSE;
+		}
+
+		@Nullable
+		@Override
+		public Collection<String> getPackages() {
+			val a = first.getPackages();
+			val b = second.getPackages();
+			if (a == null || b == null)
+				return null;
+			val packages = new LinkedHashSet<String>(a);
+			packages.addAll(b);
+			return new ArrayList<>(packages);
+		}
+
+		@Override
+		public String toString() {
+			return "(" + first + " or " + second + ')';
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package dev.minco.javatransformer.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import lombok.val;
+
+import dev.minco.javatransformer.api.ClassPath;
+import dev.minco.javatransformer.internal.javaparser.CompilationUnitInfo;
+import dev.minco.javatransformer.internal.javaparser.Parsers;
+import dev.minco.javatransformer.internal.util.HashUtil;
+import dev.minco.javatransformer.internal.util.JVMUtil;
+import dev.minco.javatransformer.internal.zip.ZipReader;
+
+/**
+ * Names, headers and member signatures of the classes in a jar, as {@link ClassStubInfo}s, stored in a directory so later runs can skip reading the jar
+ * <p>
+ * An index is reused while the jar's size and last modified time and the target release for multi-release jars are unchanged. The size and time are
+ * taken before the jar is read, so a jar which is rewritten while it is indexed is indexed again next time. The jar's contents are not hashed, as
+ * that would read the whole jar on every load, which is what the index avoids. Indexing is enabled by setting the
+ * {@value #DIRECTORY_PROPERTY} system property to the directory to store indexes in.
+ */
+final class ClassPathIndex {
+	static final String DIRECTORY_PROPERTY = "JavaTransformer.classPathIndexDirectory";
+	private static final int VERSION = 4;
+	private static final String SUFFIX = ".idx";
+
+	private final Path path;
+	private final long size;
+	private final long lastModified;
+	private final int release;
+	private final List<ClassStubInfo> classes;
+	private final List<SourceEntry> sources;
+
+	private ClassPathIndex(Path path, long size, long lastModified, int release, List<ClassStubInfo> classes, List<SourceEntry> sources) {
+		this.path = path;
+		this.size = size;
+		this.lastModified = lastModified;
+		this.release = release;
+		this.classes = classes;
+		this.sources = sources;
+	}
+
+	@Nullable
+	static Path getDirectory() {
+		val directory = System.getProperty(DIRECTORY_PROPERTY);
+		return directory == null || directory.isEmpty() ? null : Paths.get(directory);
+	}
+
+	List<ClassStubInfo> getClasses() {
+		return classes;
+	}
+
+	List<SourceEntry> getSources() {
+		return sources;
+	}
+
+	/**
+	 * @return the stored index of the given jar, or null if it has not been indexed or has changed since
+	 */
+	@Nullable
+	static ClassPathIndex load(Path directory, Path jar, int release) {
+		val file = fileFor(directory, jar);
+		try (val is = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			val size = Files.size(jar);
+			val lastModified = Files.getLastModifiedTime(jar).toMillis();
+			if (is.readInt() != VERSION || !is.readUTF().equals(jar.toString()) || is.readLong() != size || is.readLong() != lastModified || is.readInt() != release)
+				return null;
+
+			val classes = new ArrayList<ClassStubInfo>();
+			for (int i = is.readInt(); i > 0; i--)
+				classes.add(new ClassStubInfo(is));
+			val sources = new ArrayList<SourceEntry>();
+			for (int i = is.readInt(); i > 0; i--) {
+				val entryName = is.readUTF();
+				val classNames = new ArrayList<String>();
+				for (int j = is.readInt(); j > 0; j--)
+					classNames.add(is.readUTF());
+				sources.add(new SourceEntry(entryName, classNames));
+			}
+			return new ClassPathIndex(jar, size, lastModified, release, classes, sources);
+		} catch (IOException | RuntimeException e) {
+			// missing, unreadable or truncated index, will be rebuilt
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the headers and members of all classes in the given jar, and parses any sources to find the classes they declare
+	 */
+	static ClassPathIndex build(Path jar, ZipReader reader, int release, ClassPath classPath) throws IOException {
+		// as when the reader was opened, so changes made while reading the jar are noticed by load
+		val size = reader.getSize();
+		val lastModified = reader.getLastModified().toMillis();
+		val classes = new ArrayList<ClassStubInfo>();
+		val sources = new ArrayList<SourceEntry>();
+		for (val visible : ClassPaths.visibleEntries(reader, release).entrySet()) {
+			val entryName = visible.getKey();
+			val entry = visible.getValue();
+			if (entryName.endsWith(".class")) {
+				classes.add(new ClassStubInfo(JVMUtil.fileNameToClassName(entryName), reader.read(entry)));
+			} else if (entryName.endsWith(".java")) {
+				val unit = Parsers.parse(new ByteArrayInputStream(reader.read(entry)));
+				val classNames = new ArrayList<String>();
+				for (SourceInfo info : CompilationUnitInfo.getSourceInfos(unit, classPath))
+					classNames.add(info.getName());
+				sources.add(new SourceEntry(entryName, classNames));
+			}
+		}
+		return new ClassPathIndex(jar, size, lastModified, release, classes, sources);
+	}
+
+	void save(Path directory) throws IOException {
+		val file = fileFor(directory, path);
+		Files.createDirectories(directory);
+		val temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			try (val os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				os.writeInt(VERSION);
+				os.writeUTF(path.toString());
+				os.writeLong(size);
+				os.writeLong(lastModified);
+				os.writeInt(release);
+				os.writeInt(classes.size());
+				for (ClassStubInfo entry : classes)
+					entry.write(os);
+				os.writeInt(sources.size());
+				for (SourceEntry entry : sources) {
+					os.writeUTF(entry.entryName);
+					os.writeInt(entry.classNames.size());
+					for (String className : entry.classNames)
+						os.writeUTF(className);
+				}
+			}
+			try {
+				Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	static Path fileFor(Path directory, Path jar) {
+		return directory.resolve(HashUtil.sha256Hex(jar.toString().getBytes(StandardCharsets.UTF_8)) + SUFFIX);
+	}
+
+	static final class SourceEntry {
+		final String entryName;
+		final List<String> classNames;
+
+		SourceEntry(String entryName, List<String> classNames) {
+			this.entryName = entryName;
+			this.classNames = Collections.unmodifiableList(classNames);
+		}
+	}
+}
@@ -1,11 +1,13 @@
 package dev.minco.javatransformer.internal;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOError;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.management.ManagementFactory;
 import java.net.URI;
+import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -13,17 +15,27 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 import java.util.stream.Collectors;
-import java.util.zip.ZipFile;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -33,30 +45,277 @@ import lombok.val;
 
 import org.jetbrains.annotations.NotNull;
 
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 
 import dev.minco.javatransformer.api.ClassInfo;
 import dev.minco.javatransformer.api.ClassPath;
-import dev.minco.javatransformer.internal.asm.AsmUtil;
+import dev.minco.javatransformer.internal.asm.ClassHierarchy;
 import dev.minco.javatransformer.internal.javaparser.CompilationUnitInfo;
+import dev.minco.javatransformer.internal.javaparser.Parsers;
 import dev.minco.javatransformer.internal.util.CachingSupplier;
 import dev.minco.javatransformer.internal.util.CollectionUtil;
 import dev.minco.javatransformer.internal.util.JVMUtil;
 import dev.minco.javatransformer.internal.util.Splitter;
-import dev.minco.javatransformer.internal.util.StreamUtil;
+import dev.minco.javatransformer.internal.zip.ZipReader;
 
 public final class ClassPaths {
+	static final String RELEASE_PROPERTY = "JavaTransformer.classPathRelease";
+	private static final String VERSIONS = "META-INF/versions/";
+	private static final Map<List<String>, Snapshot> snapshots = new HashMap<>();
+
 	public static ClassPath of(ClassPath systemClassPath, Path... paths) {
 		return new FileClassPath(systemClassPath, new ArrayList<>(Arrays.asList(paths)));
 	}
 
+	/**
+	 * Returns a read only {@link ClassPath} for the given paths, sharing the classes already read by any other open {@link ClassPath}
+	 * created by this method for the same paths
+	 * <p>
+	 * Paths are identified by their normalised location, and jars also by their size and last modified time, so a changed jar is
+	 * read again by the next call. The shared classes are released once every {@link ClassPath} returned for them has been closed.
+	 */
+	public static ClassPath shared(Collection<Path> paths) {
+		val normalised = new ArrayList<Path>();
+		val key = new ArrayList<String>();
+		for (Path path : paths) {
+			path = ClassPathSolver.normalise(path);
+			normalised.add(path);
+			key.add(identify(path));
+		}
+
+		synchronized (snapshots) {
+			Snapshot snapshot = snapshots.get(key);
+			if (snapshot == null) {
+				snapshot = new Snapshot(key, new FileClassPath(SystemClassPath.SYSTEM_CLASS_PATH, normalised));
+				snapshots.put(key, snapshot);
+			}
+			snapshot.references++;
+			return new SharedClassPath(snapshot);
+		}
+	}
+
+	/**
+	 * Lists the classes in a package, for {@link ClassPath}s which can list them without probing for each name
+	 *
+	 * @param packageName package name in JLS format, {@code package1.package2}
+	 * @return names of the classes in the package without the package, nested classes as {@code Outer$Inner}, or null if the given
+	 * {@link ClassPath} or one of its parents can't list the classes in a package
+	 */
+	@Nullable
+	static Set<String> classNamesIn(@Nullable ClassPath classPath, String packageName) {
+		if (classPath == null)
+			return Collections.emptySet();
+		if (classPath instanceof SharedClassPath)
+			return classNamesIn(((SharedClassPath) classPath).snapshot.classPath, packageName);
+		if (!(classPath instanceof FileClassPath))
+			return null;
+
+		val fileClassPath = (FileClassPath) classPath;
+		val parentNames = classNamesIn(fileClassPath.parent, packageName);
+		if (parentNames == null)
+			return null;
+		val names = fileClassPath.getClassNames(packageName);
+		if (parentNames.isEmpty())
+			return names;
+		if (names.isEmpty())
+			return parentNames;
+		val result = new HashSet<String>(parentNames);
+		result.addAll(names);
+		return result;
+	}
+
+	/**
+	 * Returns the cache of the given type stored on the given {@link ClassPath}, creating it on first use, so caches of the classes in a
+	 * {@link ClassPath} are shared by all of its users and released with it
+	 * <p>
+	 * Other {@link ClassPath} implementations can't store caches, a new instance is created for each call
+	 */
+	public static <T> T getCache(ClassPath classPath, Class<T> type, Function<ClassPath, T> factory) {
+		if (classPath instanceof SharedClassPath)
+			classPath = ((SharedClassPath) classPath).snapshot.classPath;
+		if (!(classPath instanceof ClassPathSolver))
+			return factory.apply(classPath);
+
+		val solver = (ClassPathSolver) classPath;
+		return type.cast(solver.caches.computeIfAbsent(type, k -> factory.apply(solver)));
+	}
+
+	/**
+	 * @return whether {@code type} is {@code superType} or extends or implements it in the given {@link ClassPath}, false if either is not in it.
+	 * Supertypes missing from the {@link ClassPath} only hide the branches of the hierarchy above them. Class names are in JLS format
+	 */
+	public static boolean isAssignableFrom(ClassPath classPath, String superType, String type) {
+		val hierarchy = ClassHierarchy.of(classPath);
+		val target = superType.replace('.', '/');
+		val visited = new HashSet<String>();
+		val queue = new ArrayDeque<String>();
+		queue.add(type.replace('.', '/'));
+		while (!queue.isEmpty()) {
+			val name = queue.poll();
+			if (!visited.add(name))
+				continue;
+			try {
+				if (hierarchy.isAssignableFrom(target, name))
+					return true;
+				continue;
+			} catch (TypeNotPresentException ignored) {
+				// this type or one of its supertypes is missing, walk its direct supertypes one at a time instead
+			}
+			val info = classPath.getClassInfo(name.replace('/', '.'));
+			if (info == null)
+				continue;
+			val superName = info.getSuperType();
+			if (superName != null)
+				queue.add(superName.getClassName().replace('.', '/'));
+			for (val itf : info.getInterfaceTypes())
+				queue.add(itf.getClassName().replace('.', '/'));
+		}
+		return false;
+	}
+
+	private static String identify(Path path) {
+		try {
+			if (Files.isRegularFile(path))
+				return path + "|" + Files.size(path) + '|' + Files.getLastModifiedTime(path).toMillis();
+		} catch (IOException ignored) {
+			// identified by path only, as if it didn't exist
+		}
+		return path.toString();
+	}
+
+	private static final class Snapshot {
+		final List<String> key;
+		final FileClassPath classPath;
+		int references;
+
+		Snapshot(List<String> key, FileClassPath classPath) {
+			this.key = key;
+			this.classPath = classPath;
+		}
+
+		void release() {
+			synchronized (snapshots) {
+				if (--references == 0) {
+					snapshots.remove(key);
+					classPath.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Handle to a shared {@link FileClassPath}, see {@link #shared(Collection)}
+	 */
+	private static final class SharedClassPath implements ClassPath {
+		private final Snapshot snapshot;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		SharedClassPath(Snapshot snapshot) {
+			this.snapshot = snapshot;
+		}
+
+		@Nullable
+		@Override
+		public ClassInfo getClassInfo(@Nonnull String className) {
+			return snapshot.classPath.getClassInfo(className);
+		}
+
+		@Override
+		public boolean addPath(Path path) {
+			throw new UnsupportedOperationException("Shared classpaths can not be changed, create a new one with the extra path instead");
+		}
+
+		@Override
+		public boolean hasPath(Path path) {
+			return snapshot.classPath.hasPath(path);
+		}
+
+		@NotNull
+		@Override
+		public Iterator<ClassInfo> iterator() {
+			return snapshot.classPath.iterator();
+		}
+
+		@Override
+		public void close() {
+			if (closed.compareAndSet(false, true))
+				snapshot.release();
+		}
+
+		@Override
+		public String toString() {
+			return "SharedClassPath{" + snapshot.classPath + '}';
+		}
+	}
+
+	/**
+	 * @return the Java release used to choose between the versions of a class in multi-release jars. Defaults to the running
+	 * release, and can be set with the {@value #RELEASE_PROPERTY} system property
+	 */
+	static int getTargetRelease() {
+		return Integer.getInteger(RELEASE_PROPERTY, Runtime.version().feature());
+	}
+
+	/**
+	 * Returns the class and source entries of a jar, keyed by the name they are visible under at the given release
+	 * <p>
+	 * In multi-release jars an entry under {@code META-INF/versions/N/} replaces the entry with the same name in lower versions
+	 * when N is at most the given release. Shadowed versions, module descriptors and package descriptors are left out.
+	 */
+	static Map<String, ZipReader.Entry> visibleEntries(ZipReader reader, int release) throws IOException {
+		val multiRelease = isMultiRelease(reader);
+		val versions = new HashMap<String, Integer>();
+		val result = new LinkedHashMap<String, ZipReader.Entry>();
+		for (val entry : reader.getEntries()) {
+			String name = entry.getName();
+			int version = 0;
+			if (name.startsWith("META-INF/")) {
+				if (!multiRelease || !name.startsWith(VERSIONS))
+					continue;
+				val slash = name.indexOf('/', VERSIONS.length());
+				if (slash == -1)
+					continue;
+				try {
+					version = Integer.parseInt(name.substring(VERSIONS.length(), slash));
+				} catch (NumberFormatException e) {
+					continue;
+				}
+				if (version > release)
+					continue;
+				name = name.substring(slash + 1);
+			}
+			if (!isClassOrSource(name))
+				continue;
+			val previous = versions.get(name);
+			if (previous != null && previous > version)
+				continue;
+			versions.put(name, version);
+			result.put(name, entry);
+		}
+		return result;
+	}
+
+	private static boolean isMultiRelease(ZipReader reader) throws IOException {
+		val manifest = reader.getEntry(JarFile.MANIFEST_NAME);
+		if (manifest == null)
+			return false;
+		return "true".equalsIgnoreCase(new Manifest(new ByteArrayInputStream(reader.read(manifest))).getMainAttributes().getValue("Multi-Release"));
+	}
+
+	/**
+	 * @return whether the given entry is a class or source file which declares types, rather than module or package metadata
+	 */
+	static boolean isClassOrSource(String entryName) {
+		if (!entryName.endsWith(".class") && !entryName.endsWith(".java"))
+			return false;
+		val fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+		return !fileName.startsWith("module-info.") && !fileName.startsWith("package-info.");
+	}
+
 	public static class SystemClassPath {
 		public static final ClassPath SYSTEM_CLASS_PATH = makeSystemJarClassPath();
 
 		private static ClassPath makeSystemJarClassPath() {
-			// only scan java/ files in boot class path
-			// avoid JVM/JDK internals
 			// TODO: self-test, if we can't load JDK classes with current asm version fall back to reflection
 			try {
 				val paths = Splitter.pathSplitter.split(ManagementFactory.getRuntimeMXBean().getBootClassPath())
@@ -64,8 +323,114 @@ public final class ClassPaths {
 					.collect(Collectors.toList());
 				return new FileClassPath(null, paths);
 			} catch (UnsupportedOperationException ignored) {
-				val fs = FileSystems.getFileSystem(URI.create("jrt:/"));
-				return new FileClassPath(null, Collections.singletonList(fs.getPath("modules/java.base/")));
+				return new JrtClassPath(FileSystems.getFileSystem(URI.create("jrt:/")), null, false);
+			}
+		}
+
+		/**
+		 * Creates a {@link ClassPath} containing the classes of the given JDK
+		 * <p>
+		 * JDK 9 and later are read from their module image, and earlier JDKs from {@code rt.jar}
+		 *
+		 * @param javaHome JDK or JRE home, or null for the running JDK
+		 * @param modules  modules to include, or null for all modules. Ignored for JDKs without modules
+		 */
+		@SneakyThrows
+		public static ClassPath of(@Nullable Path javaHome, @Nullable Collection<String> modules) {
+			if (javaHome == null)
+				return modules == null || !(SYSTEM_CLASS_PATH instanceof JrtClassPath) ? SYSTEM_CLASS_PATH : new JrtClassPath(FileSystems.getFileSystem(URI.create("jrt:/")), modules, false);
+
+			for (String rtJar : new String[]{"jre/lib/rt.jar", "lib/rt.jar"}) {
+				val path = javaHome.resolve(rtJar);
+				if (Files.isRegularFile(path))
+					return new FileClassPath(null, new ArrayList<>(Collections.singletonList(path)));
+			}
+			val fs = FileSystems.newFileSystem(URI.create("jrt:/"), Collections.singletonMap("java.home", javaHome.toString()));
+			return new JrtClassPath(fs, modules, true);
+		}
+	}
+
+	/**
+	 * Reads classes from a JDK's module image. Packages are found through the image's {@code /packages} directory, so only the
+	 * modules which contain a package are listed when a class in it is first looked up
+	 */
+	static class JrtClassPath extends FileClassPath {
+		private final FileSystem fileSystem;
+		@Nullable
+		private final Set<String> modules;
+		private final boolean ownsFileSystem;
+
+		JrtClassPath(FileSystem fileSystem, @Nullable Collection<String> modules, boolean ownsFileSystem) {
+			super(null, Collections.singletonList(fileSystem.getPath("/modules")));
+			this.fileSystem = fileSystem;
+			this.modules = modules == null ? null : new HashSet<>(modules);
+			this.ownsFileSystem = ownsFileSystem;
+		}
+
+		@Override
+		PathLoader openPath(Path path) {
+			if (path.getFileSystem() == fileSystem && path.toString().equals("/modules"))
+				return new ModuleImageLoader();
+			return super.openPath(path);
+		}
+
+		@Override
+		public synchronized void close() {
+			super.close();
+			if (ownsFileSystem) {
+				try {
+					fileSystem.close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+
+		private boolean includes(String module) {
+			return modules == null || modules.contains(module);
+		}
+
+		private final class ModuleImageLoader implements PathLoader {
+			private final Set<String> loaded = new HashSet<>();
+
+			@SneakyThrows
+			@Override
+			public void loadPackage(String packageName) {
+				if (packageName.isEmpty() || !loaded.add(packageName))
+					return;
+				val links = fileSystem.getPath("/packages", packageName);
+				if (!Files.isDirectory(links))
+					return;
+				val directoryName = packageName.replace('.', '/');
+				try (val stream = Files.newDirectoryStream(links)) {
+					for (Path link : stream) {
+						val module = link.getFileName().toString();
+						if (!includes(module))
+							continue;
+						val directory = fileSystem.getPath("/modules", module, directoryName);
+						if (!Files.isDirectory(directory))
+							continue;
+						try (val files = Files.newDirectoryStream(directory, "*.class")) {
+							for (Path file : files)
+								findPaths(directoryName + '/' + file.getFileName(), () -> {
+									try {
+										return Files.readAllBytes(file);
+									} catch (IOException e) {
+										throw new UncheckedIOException(e);
+									}
+								});
+						}
+					}
+				}
+			}
+
+			@SneakyThrows
+			@Override
+			public void loadAll() {
+				try (val stream = Files.newDirectoryStream(fileSystem.getPath("/packages"))) {
+					for (Path packageDirectory : stream)
+						loadPackage(packageDirectory.getFileName().toString());
+				}
 			}
 		}
 	}
@@ -73,6 +438,10 @@ public final class ClassPaths {
 	private static abstract class ClassPathSolver implements ClassPath {
 		@Nullable
 		final ClassPath parent;
+		/**
+		 * See {@link #getCache(ClassPath, Class, Function)}
+		 */
+		final Map<Class<?>, Object> caches = new ConcurrentHashMap<>();
 
 		ClassPathSolver(@Nullable ClassPath parent) {
 			this.parent = parent;
@@ -83,14 +452,44 @@ public final class ClassPaths {
 		}
 	}
 
+	/**
+	 * Reads classes from folders and jars
+	 * <p>
+	 * Paths are opened on the first lookup, and the classes of a package are only registered once a class in that package is
+	 * looked up, so the cost of a lookup does not grow with the size of the classpath
+	 * <p>
+	 * Safe for concurrent use. Lookups in already loaded packages do not lock, loading a package or adding a path locks this
+	 * instance, and each entry is parsed at most once however many threads use it
+	 */
 	static class FileClassPath extends ClassPathSolver {
-		private final Map<String, ClassInfo> entries = new HashMap<>();
+		private final Map<String, ClassInfo> entries = new ConcurrentHashMap<>();
+		/**
+		 * Names of the classes in {@link #entries} by package, see {@link #getClassNames(String)}
+		 */
+		private final Map<String, Set<String>> packageMembers = new ConcurrentHashMap<>();
 		private final Collection<Path> paths;
-		private boolean initialised;
+		private final List<ZipReader> readers = new ArrayList<>();
+		private final List<PathLoader> loaders = new ArrayList<>();
+		/**
+		 * Packages are only added once all of their classes have been put in {@link #entries}
+		 */
+		private final Set<String> loadedPackages = ConcurrentHashMap.newKeySet();
+		private boolean opened;
+		private volatile boolean initialised;
 
 		public FileClassPath(@Nullable ClassPath parent, Collection<Path> paths) {
 			super(parent);
-			this.paths = paths;
+			this.paths = new CopyOnWriteArrayList<>(paths);
+		}
+
+		static String packageOf(String className) {
+			val lastDot = className.lastIndexOf('.');
+			return lastDot == -1 ? "" : className.substring(0, lastDot);
+		}
+
+		static String packageOfEntry(String entryName) {
+			val lastSlash = entryName.lastIndexOf('/');
+			return lastSlash == -1 ? "" : entryName.substring(0, lastSlash).replace('/', '.');
 		}
 
 		@Nullable
@@ -102,8 +501,11 @@ public final class ClassPaths {
 				if (p != null)
 					return p;
 			}
-			if (!initialised)
-				initialise();
+			if (!initialised) {
+				val packageName = packageOf(className);
+				if (!loadedPackages.contains(packageName))
+					loadPackage(packageName);
+			}
 			return entries.get(className);
 		}
 
@@ -114,8 +516,13 @@ public final class ClassPaths {
 				return false;
 			}
 			paths.add(path);
-			if (initialised) {
-				loadPath(path);
+			if (opened) {
+				val loader = openPath(path);
+				loaders.add(loader);
+				for (String packageName : loadedPackages)
+					loader.loadPackage(packageName);
+				if (initialised)
+					loader.loadAll();
 			}
 			return true;
 		}
@@ -136,71 +543,174 @@ public final class ClassPaths {
 			return CollectionUtil.union(parent, entries.values());
 		}
 
-		@SneakyThrows
-		private void findPaths(String entryName, Supplier<InputStream> iss) {
+		/**
+		 * @return names of the classes in the given package in this classpath, not including its parent, without the package
+		 */
+		Set<String> getClassNames(String packageName) {
+			if (!initialised && !loadedPackages.contains(packageName))
+				loadPackage(packageName);
+			val names = packageMembers.get(packageName);
+			return names == null ? Collections.emptySet() : Collections.unmodifiableSet(names);
+		}
+
+		private void put(String className, ClassInfo classInfo) {
+			entries.put(className, classInfo);
+			val packageName = packageOf(className);
+			val simpleName = packageName.isEmpty() ? className : className.substring(packageName.length() + 1);
+			packageMembers.computeIfAbsent(packageName, k -> ConcurrentHashMap.newKeySet()).add(simpleName);
+		}
+
+		Set<String> getLoadedPackages() {
+			return Collections.unmodifiableSet(loadedPackages);
+		}
+
+		void findPaths(String entryName, Supplier<byte[]> data) {
+			if (!isClassOrSource(entryName))
+				return;
+
 			if (entryName.endsWith(".java"))
-				try (val is = iss.get()) {
-					findJavaPaths(is);
-				}
+				findJavaPaths(new ByteArrayInputStream(data.get()));
 
 			if (entryName.endsWith(".class")) {
 				String name = JVMUtil.fileNameToClassName(entryName);
-				entries.put(name, new ByteCodeInfo(CachingSupplier.of(() -> AsmUtil.getClassNode(StreamUtil.readFully(iss.get()), null)), name, Collections.emptyMap()));
+				put(name, new ClassStubInfo(name, data));
 			}
 		}
 
 		private void findJavaPaths(InputStream is) {
-			val parsed = StaticJavaParser.parse(is);
+			val parsed = Parsers.parse(is);
 			findJavaPaths(parsed);
 		}
 
 		private void findJavaPaths(CompilationUnit compilationUnit) {
 			for (ClassInfo classInfo : CompilationUnitInfo.getSourceInfos(compilationUnit, this))
-				entries.put(classInfo.getName(), classInfo);
+				put(classInfo.getName(), classInfo);
+		}
+
+		private synchronized void open() {
+			if (!opened) {
+				for (Path path : paths)
+					loaders.add(openPath(path));
+				opened = true;
+			}
+		}
+
+		private synchronized void loadPackage(String packageName) {
+			if (initialised || loadedPackages.contains(packageName))
+				return;
+			open();
+			for (PathLoader loader : loaders)
+				loader.loadPackage(packageName);
+			loadedPackages.add(packageName);
 		}
 
 		private synchronized void initialise() {
 			if (!initialised) {
-				for (Path path : paths)
-					loadPath(path);
+				open();
+				for (PathLoader loader : loaders)
+					loader.loadAll();
 				initialised = true;
 			}
 		}
 
 		@SneakyThrows
-		private void loadPath(Path path) {
+		PathLoader openPath(Path path) {
 			if (Files.isDirectory(path))
-				Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-					@SneakyThrows
-					@Override
-					public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-						val entryName = path.relativize(file).toString().replace(File.separatorChar, '/');
-						findPaths(entryName, () -> {
-							try {
-								return Files.newInputStream(file);
-							} catch (IOException e) {
-								throw new IOError(e);
-							}
-						});
-						return super.visitFile(file, attrs);
-					}
-				});
-			else if (Files.isRegularFile(path))
-				try (val zf = new ZipFile(path.toFile())) {
-					val e$ = zf.entries();
-					while (e$.hasMoreElements()) {
-						val ze = e$.nextElement();
-						val name = ze.getName();
-						findPaths(name, () -> {
-							try {
-								val zff = new ZipFile(path.toFile());
-								return zff.getInputStream(zff.getEntry(name));
-							} catch (IOException e) {
-								throw new IOError(e);
-							}
-						});
+				return new DirectoryLoader(path);
+
+			val loader = new JarLoader();
+			if (Files.isRegularFile(path)) {
+				val indexDirectory = ClassPathIndex.getDirectory();
+				if (indexDirectory == null || !openIndexed(path, indexDirectory, loader))
+					openJar(path, loader);
+			}
+			return loader;
+		}
+
+		private void openJar(Path path, JarLoader loader) throws IOException {
+			val reader = ZipReader.open(path);
+			readers.add(reader);
+			for (val visible : visibleEntries(reader, getTargetRelease()).entrySet()) {
+				val entryName = visible.getKey();
+				val entry = visible.getValue();
+				loader.add(packageOfEntry(entryName), () -> findPaths(entryName, () -> {
+					try {
+						return reader.read(entry);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
 					}
+				}));
+			}
+		}
+
+		/**
+		 * Registers the classes in the given jar from its stored index, building and storing the index first if needed. If the index
+		 * can't be stored it is still used for this {@link FileClassPath}
+		 *
+		 * @return false if the jar could not be indexed
+		 */
+		private boolean openIndexed(Path path, Path indexDirectory, JarLoader loader) throws IOException {
+			ZipReader reader = null;
+			ClassPathIndex index = ClassPathIndex.load(indexDirectory, path, getTargetRelease());
+			if (index == null) {
+				reader = ZipReader.open(path);
+				try {
+					index = ClassPathIndex.build(path, reader, getTargetRelease(), this);
+				} catch (IOException | RuntimeException e) {
+					// classes ASM can't read are left to fail when used, as they would without an index
+					reader.close();
+					return false;
+				}
+				try {
+					index.save(indexDirectory);
+				} catch (IOException e) {
+					// the index is only a cache, an unwritable index directory should not stop the jar being used, so the index
+					// which was just built is used without being stored
+				}
+			}
+
+			for (val entry : index.getClasses())
+				loader.add(packageOf(entry.getName()), () -> put(entry.getName(), entry));
+
+			if (!index.getSources().isEmpty()) {
+				if (reader == null)
+					reader = ZipReader.open(path);
+				val sourceReader = reader;
+				for (val entry : index.getSources()) {
+					val zipEntry = sourceReader.getEntry(entry.entryName);
+					val unit = CachingSupplier.of(() -> {
+						try {
+							return Parsers.parse(new ByteArrayInputStream(sourceReader.read(zipEntry)));
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+					loader.add(packageOfEntry(entry.entryName), () -> {
+						for (String className : entry.classNames)
+							put(className, new SourceInfo(() -> Objects.requireNonNull(CompilationUnitInfo.getTypeDeclaration(unit.get(), className), className), className, this));
+					});
 				}
+			}
+
+			if (reader != null)
+				readers.add(reader);
+			return true;
+		}
+
+		@Override
+		public synchronized void close() {
+			for (ZipReader reader : readers) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			readers.clear();
+			// stubs of closed jars can't be read again, and would otherwise be kept by the shared cache until evicted
+			for (ClassInfo info : entries.values())
+				if (info instanceof ClassStubInfo)
+					ClassStubInfo.getCache().remove((ClassStubInfo) info);
 		}
 
 		@Override
@@ -208,10 +718,99 @@ public final class ClassPaths {
 			return "FileClassPath{" +
 				"entries.size()=" + entries.size() +
 				", paths=" + paths +
+				", loadedPackages.size()=" + loadedPackages.size() +
 				", initialised=" + initialised +
 				", parent=" + parent +
 				'}';
 		}
+
+		interface PathLoader {
+			/**
+			 * Registers the classes in the given package, if they have not been registered yet
+			 */
+			void loadPackage(String packageName);
+
+			/**
+			 * Registers the classes in all packages which have not been registered yet
+			 */
+			void loadAll();
+		}
+
+		/**
+		 * Registers entries grouped by package from an archive's directory
+		 */
+		private static final class JarLoader implements PathLoader {
+			private final Map<String, List<Runnable>> pending = new HashMap<>();
+
+			void add(String packageName, Runnable load) {
+				pending.computeIfAbsent(packageName, k -> new ArrayList<>()).add(load);
+			}
+
+			@Override
+			public void loadPackage(String packageName) {
+				val loads = pending.remove(packageName);
+				if (loads != null)
+					for (Runnable load : loads)
+						load.run();
+			}
+
+			@Override
+			public void loadAll() {
+				for (String packageName : new ArrayList<>(pending.keySet()))
+					loadPackage(packageName);
+			}
+		}
+
+		/**
+		 * Lists a package's folder when it is first needed
+		 */
+		private final class DirectoryLoader implements PathLoader {
+			private final Path root;
+			private final Set<String> loaded = new HashSet<>();
+
+			DirectoryLoader(Path root) {
+				this.root = root;
+			}
+
+			@SneakyThrows
+			@Override
+			public void loadPackage(String packageName) {
+				if (!loaded.add(packageName))
+					return;
+				val directory = packageName.isEmpty() ? root : root.resolve(packageName.replace('.', '/'));
+				if (!Files.isDirectory(directory))
+					return;
+				try (val stream = Files.newDirectoryStream(directory)) {
+					for (Path file : stream) {
+						if (!Files.isRegularFile(file))
+							continue;
+						val entryName = root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+						findPaths(entryName, () -> {
+							try {
+								return Files.readAllBytes(file);
+							} catch (IOException e) {
+								throw new IOError(e);
+							}
+						});
+					}
+				}
+			}
+
+			@SneakyThrows
+			@Override
+			public void loadAll() {
+				Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+						val relative = root.relativize(dir).toString().replace(dir.getFileSystem().getSeparator(), "/");
+						if (relative.equals("META-INF"))
+							return FileVisitResult.SKIP_SUBTREE;
+						loadPackage(relative.isEmpty() ? "" : packageOfEntry(relative + '/'));
+						return super.preVisitDirectory(dir, attrs);
+					}
+				});
+			}
+		}
 	}
 
 	/*
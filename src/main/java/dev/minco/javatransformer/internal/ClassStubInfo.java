@@ -0,0 +1,497 @@
+package dev.minco.javatransformer.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+import lombok.val;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import dev.minco.javatransformer.api.AccessFlags;
+import dev.minco.javatransformer.api.Annotation;
+import dev.minco.javatransformer.api.ClassInfo;
+import dev.minco.javatransformer.api.FieldInfo;
+import dev.minco.javatransformer.api.MethodInfo;
+import dev.minco.javatransformer.api.Parameter;
+import dev.minco.javatransformer.api.Type;
+import dev.minco.javatransformer.api.TypeVariable;
+import dev.minco.javatransformer.internal.util.BoundedCache;
+
+/**
+ * Read only {@link ClassInfo} for classes which are only on the {@link dev.minco.javatransformer.api.ClassPath}
+ * <p>
+ * Only the header and member signatures are read, with {@code SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES}. Annotations and method code are not available.
+ * <p>
+ * The class file, or the serialized header for stubs loaded from a {@link ClassPathIndex}, is read on first use and the result is kept in a
+ * cache shared by all classpaths, see {@link #getCache()}. When the cache is full the least recently used classes are dropped and read again
+ * when next used. The classes of a {@link ClassPaths.FileClassPath} are removed from the cache when it is closed.
+ */
+public final class ClassStubInfo implements ClassInfo {
+	static final String CACHE_SIZE_PROPERTY = "JavaTransformer.classPathCacheSize";
+	private static final long DEFAULT_CACHE_SIZE = 64 * 1024 * 1024;
+	private static final BoundedCache<ClassStubInfo, Header> cache = new BoundedCache<>(Header::getWeight, Long.getLong(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+	private static final String[] NO_INTERFACES = new String[0];
+
+	private final String className;
+	@Nullable
+	private final Supplier<byte[]> data;
+	/**
+	 * Set for stubs which were not read from a class file, the header and members as written by {@link #write(DataOutputStream)}
+	 */
+	@Nullable
+	private final byte[] serialized;
+
+	ClassStubInfo(String className, Supplier<byte[]> data) {
+		this.className = className;
+		this.data = data;
+		this.serialized = null;
+	}
+
+	ClassStubInfo(String className, byte[] data) throws IOException {
+		this.className = className;
+		this.data = null;
+		this.serialized = serialize(parse(data));
+	}
+
+	ClassStubInfo(DataInputStream is) throws IOException {
+		this.className = is.readUTF();
+		this.data = null;
+		this.serialized = new byte[is.readInt()];
+		is.readFully(serialized);
+	}
+
+	/**
+	 * @return the cache of class files read by {@link ClassStubInfo}s. Its maximum size defaults to 64MiB, and can be set with the
+	 * {@value #CACHE_SIZE_PROPERTY} system property or {@link BoundedCache#setMaxWeight(long)}
+	 */
+	public static BoundedCache<ClassStubInfo, Header> getCache() {
+		return cache;
+	}
+
+	private Header header() {
+		return cache.get(this, this::load);
+	}
+
+	private Header load() {
+		val serialized = this.serialized;
+		if (serialized == null)
+			return parse(Objects.requireNonNull(data).get());
+		try {
+			return deserialize(new DataInputStream(new ByteArrayInputStream(serialized)));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Header parse(byte[] bytes) {
+		val reader = new HeaderReader();
+		new ClassReader(bytes).accept(reader, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return new Header(reader.access, reader.signature, reader.superName, reader.interfaces, reader.fields.toArray(new FieldStub[0]), reader.methods.toArray(new MethodStub[0]));
+	}
+
+	private Header deserialize(DataInputStream is) throws IOException {
+		val access = is.readInt();
+		val signature = readNullable(is);
+		val superName = readNullable(is);
+		val interfaces = new String[is.readInt()];
+		for (int i = 0; i < interfaces.length; i++)
+			interfaces[i] = is.readUTF();
+		val fields = new FieldStub[is.readInt()];
+		for (int i = 0; i < fields.length; i++)
+			fields[i] = new FieldStub(is.readInt(), is.readUTF(), is.readUTF(), readNullable(is));
+		val methods = new MethodStub[is.readInt()];
+		for (int i = 0; i < methods.length; i++)
+			methods[i] = new MethodStub(is.readInt(), is.readUTF(), is.readUTF(), readNullable(is));
+		return new Header(access, signature, superName, interfaces, fields, methods);
+	}
+
+	private static byte[] serialize(Header header) throws IOException {
+		val bytes = new ByteArrayOutputStream();
+		try (val os = new DataOutputStream(bytes)) {
+			os.writeInt(header.access);
+			writeNullable(os, header.signature);
+			writeNullable(os, header.superName);
+			os.writeInt(header.interfaces.length);
+			for (String itf : header.interfaces)
+				os.writeUTF(itf);
+			os.writeInt(header.fields.length);
+			for (FieldStub field : header.fields) {
+				os.writeInt(field.access);
+				os.writeUTF(field.name);
+				os.writeUTF(field.desc);
+				writeNullable(os, field.signature);
+			}
+			os.writeInt(header.methods.length);
+			for (MethodStub method : header.methods) {
+				os.writeInt(method.access);
+				os.writeUTF(method.name);
+				os.writeUTF(method.desc);
+				writeNullable(os, method.signature);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	void write(DataOutputStream os) throws IOException {
+		val serialized = this.serialized == null ? serialize(header()) : this.serialized;
+		os.writeUTF(className);
+		os.writeInt(serialized.length);
+		os.write(serialized);
+	}
+
+	@Nullable
+	private static String readNullable(DataInputStream is) throws IOException {
+		return is.readBoolean() ? is.readUTF() : null;
+	}
+
+	private static void writeNullable(DataOutputStream os, @Nullable String value) throws IOException {
+		os.writeBoolean(value != null);
+		if (value != null)
+			os.writeUTF(value);
+	}
+
+	private static UnsupportedOperationException readOnly(Object info) {
+		return new UnsupportedOperationException(info + " is only on the classpath and can not be changed");
+	}
+
+	@Override
+	public String getName() {
+		return className;
+	}
+
+	@Override
+	public void setName(String name) {
+		throw readOnly(this);
+	}
+
+	@Override
+	public AccessFlags getAccessFlags() {
+		return new AccessFlags(header().access);
+	}
+
+	@Override
+	public void setAccessFlags(AccessFlags accessFlags) {
+		throw readOnly(this);
+	}
+
+	@Override
+	public List<Annotation> getAnnotations() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public void add(MethodInfo method) {
+		throw readOnly(this);
+	}
+
+	@Override
+	public void add(FieldInfo field) {
+		throw readOnly(this);
+	}
+
+	@Override
+	public void remove(MethodInfo method) {
+		throw readOnly(this);
+	}
+
+	@Override
+	public void remove(FieldInfo field) {
+		throw readOnly(this);
+	}
+
+	@Nullable
+	@Override
+	public Type getSuperType() {
+		val superName = header().superName;
+		return superName == null ? null : new Type("L" + superName + ";");
+	}
+
+	@Override
+	public List<Type> getInterfaceTypes() {
+		return Arrays.stream(header().interfaces).map(it -> new Type("L" + it + ";")).collect(Collectors.toList());
+	}
+
+	@Override
+	public Stream<MethodInfo> getMethods() {
+		return Arrays.stream(header().methods);
+	}
+
+	@Override
+	public Stream<FieldInfo> getFields() {
+		return Arrays.stream(header().fields);
+	}
+
+	@Override
+	public List<TypeVariable> getTypeVariables() {
+		return Signature.getTypeVariables(header().signature);
+	}
+
+	@Override
+	public void setTypeVariables(List<TypeVariable> typeVariables) {
+		throw readOnly(this);
+	}
+
+	@Override
+	public String toString() {
+		return "ClassStubInfo{" + className + '}';
+	}
+
+	/**
+	 * Header and members read from a class file
+	 */
+	public static final class Header {
+		private final int access;
+		@Nullable
+		private final String signature;
+		@Nullable
+		private final String superName;
+		private final String[] interfaces;
+		private final FieldStub[] fields;
+		private final MethodStub[] methods;
+		private final long weight;
+
+		Header(int access, @Nullable String signature, @Nullable String superName, String[] interfaces, FieldStub[] fields, MethodStub[] methods) {
+			this.access = access;
+			this.signature = signature;
+			this.superName = superName;
+			this.interfaces = interfaces;
+			this.fields = fields;
+			this.methods = methods;
+
+			long weight = 64 + weigh(signature) + weigh(superName);
+			for (String itf : interfaces)
+				weight += 8 + weigh(itf);
+			for (FieldStub field : fields)
+				weight += 40 + weigh(field.name) + weigh(field.desc) + weigh(field.signature);
+			for (MethodStub method : methods)
+				weight += 48 + weigh(method.name) + weigh(method.desc) + weigh(method.signature);
+			this.weight = weight;
+		}
+
+		private static long weigh(@Nullable String value) {
+			return value == null ? 0 : 40 + 2L * value.length();
+		}
+
+		/**
+		 * @return approximate size in bytes
+		 */
+		long getWeight() {
+			return weight;
+		}
+	}
+
+	private final class HeaderReader extends ClassVisitor {
+		final List<FieldStub> fields = new ArrayList<>();
+		final List<MethodStub> methods = new ArrayList<>();
+		int access;
+		@Nullable
+		String signature;
+		@Nullable
+		String superName;
+		String[] interfaces = NO_INTERFACES;
+
+		HeaderReader() {
+			super(Opcodes.ASM9);
+		}
+
+		@Override
+		public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+			this.access = access;
+			this.signature = signature;
+			this.superName = superName;
+			if (interfaces != null)
+				this.interfaces = interfaces;
+		}
+
+		@Override
+		public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+			fields.add(new FieldStub(access, name, descriptor, signature));
+			return null;
+		}
+
+		@Override
+		public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+			methods.add(new MethodStub(access, name, descriptor, signature));
+			return null;
+		}
+	}
+
+	private final class FieldStub implements FieldInfo {
+		final int access;
+		final String name;
+		final String desc;
+		@Nullable
+		final String signature;
+
+		FieldStub(int access, String name, String desc, @Nullable String signature) {
+			this.access = access;
+			this.name = name;
+			this.desc = desc;
+			this.signature = signature;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void setName(String name) {
+			throw readOnly(this);
+		}
+
+		@Override
+		public AccessFlags getAccessFlags() {
+			return new AccessFlags(access);
+		}
+
+		@Override
+		public void setAccessFlags(AccessFlags accessFlags) {
+			throw readOnly(this);
+		}
+
+		@Override
+		public Type getType() {
+			return new Type(desc, signature);
+		}
+
+		@Override
+		public void setType(Type type) {
+			throw readOnly(this);
+		}
+
+		@Override
+		public List<Annotation> getAnnotations() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public ClassInfo getClassInfo() {
+			return ClassStubInfo.this;
+		}
+
+		@Override
+		public String toString() {
+			return SimpleFieldInfo.toString(this);
+		}
+
+		@Override
+		@SuppressWarnings("MethodDoesntCallSuperMethod")
+		public FieldInfo clone() {
+			return SimpleFieldInfo.of(getAccessFlags(), getType(), name);
+		}
+	}
+
+	private final class MethodStub implements MethodInfo {
+		final int access;
+		final String name;
+		final String desc;
+		@Nullable
+		final String signature;
+		@Nullable
+		private volatile MethodDescriptor descriptor;
+
+		MethodStub(int access, String name, String desc, @Nullable String signature) {
+			this.access = access;
+			this.name = name;
+			this.desc = desc;
+			this.signature = signature;
+		}
+
+		private MethodDescriptor descriptor() {
+			MethodDescriptor descriptor = this.descriptor;
+			if (descriptor == null)
+				this.descriptor = descriptor = new MethodDescriptor(desc, signature);
+			return descriptor;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void setName(String name) {
+			throw readOnly(this);
+		}
+
+		@Override
+		public AccessFlags getAccessFlags() {
+			return new AccessFlags(access);
+		}
+
+		@Override
+		public void setAccessFlags(AccessFlags accessFlags) {
+			throw readOnly(this);
+		}
+
+		@Override
+		public Type getReturnType() {
+			return descriptor().getReturnType();
+		}
+
+		@Override
+		public void setReturnType(Type returnType) {
+			throw readOnly(this);
+		}
+
+		@Override
+		public List<Parameter> getParameters() {
+			return descriptor().getParameters();
+		}
+
+		@Override
+		public void setParameters(List<Parameter> parameters) {
+			throw readOnly(this);
+		}
+
+		@Override
+		public List<TypeVariable> getTypeVariables() {
+			return descriptor().getTypeVariables();
+		}
+
+		@Override
+		public void setTypeVariables(List<TypeVariable> typeVariables) {
+			throw readOnly(this);
+		}
+
+		@Override
+		public List<Annotation> getAnnotations() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public ClassInfo getClassInfo() {
+			return ClassStubInfo.this;
+		}
+
+		@Override
+		public String toString() {
+			return SimpleMethodInfo.toString(this);
+		}
+
+		@Override
+		@SuppressWarnings("MethodDoesntCallSuperMethod")
+		public MethodInfo clone() {
+			return SimpleMethodInfo.of(getAccessFlags(), getTypeVariables(), getReturnType(), name, getParameters());
+		}
+	}
+}
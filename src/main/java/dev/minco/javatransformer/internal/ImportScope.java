@@ -0,0 +1,250 @@
+package dev.minco.javatransformer.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.observer.AstObserver;
+import com.github.javaparser.ast.observer.ObservableProperty;
+import com.github.javaparser.ast.observer.PropagatingAstObserver;
+
+import dev.minco.javatransformer.api.ClassPath;
+import dev.minco.javatransformer.api.Type;
+import dev.minco.javatransformer.internal.util.NodeUtil;
+
+/**
+ * Resolves class names through the package and imports of a compilation unit, remembering each result
+ * <p>
+ * Single type imports are looked up by simple name, and wildcard imports, the package and {@code java.lang} by checking the names of the
+ * classes in each package if the {@link ClassPath} can list them, see {@link ClassPaths#classNamesIn(ClassPath, String)}
+ * <p>
+ * One instance is shared by the {@link ResolutionContext}s of every member of a {@link CompilationUnit}. Names which could not be resolved
+ * are remembered too, so classes added to the {@link ClassPath} afterwards are not found. Results are discarded when the imports of the
+ * {@link CompilationUnit} change, imports passed to {@link #ImportScope(String, List, ClassPath)} are assumed not to change
+ */
+final class ImportScope {
+	private static final DataKey<ImportScope> KEY = new DataKey<ImportScope>() {};
+
+	private final String packageName;
+	private final Supplier<List<ImportDeclaration>> imports;
+	private final ClassPath classPath;
+	private final Map<String, Optional<Type>> resolved = new ConcurrentHashMap<>();
+	private final Map<String, Optional<Set<String>>> packageMembers = new ConcurrentHashMap<>();
+	@Nullable
+	private final Invalidator invalidator;
+	private volatile Table table;
+	private volatile boolean changed;
+	private volatile int generation;
+
+	ImportScope(String packageName, List<ImportDeclaration> imports, ClassPath classPath) {
+		this.packageName = packageName;
+		this.imports = () -> imports;
+		this.classPath = classPath;
+		this.invalidator = null;
+		table = new Table(imports);
+	}
+
+	private ImportScope(String packageName, CompilationUnit cu, ClassPath classPath) {
+		this.packageName = packageName;
+		this.imports = cu::getImports;
+		this.classPath = classPath;
+		this.invalidator = new Invalidator();
+		table = new Table(observe(cu.getImports()));
+	}
+
+	/**
+	 * @return the scope shared by all members of the given compilation unit which are resolved with the given {@link ClassPath}
+	 */
+	static ImportScope of(CompilationUnit cu, String packageName, ClassPath classPath) {
+		synchronized (cu) {
+			if (cu.containsData(KEY)) {
+				val scope = cu.getData(KEY);
+				if (scope.classPath == classPath && scope.packageName.equals(packageName))
+					return scope;
+			}
+			val scope = new ImportScope(packageName, cu, classPath);
+			cu.setData(KEY, scope);
+			return scope;
+		}
+	}
+
+	private static boolean hasPackages(String name) {
+		// Guesses whether input name includes packages or is just classes
+		return !Character.isUpperCase(name.charAt(0)) && name.indexOf('.') != -1;
+	}
+
+	static String classOf(ImportDeclaration importDeclaration) {
+		return NodeUtil.qualifiedName(importDeclaration.getName());
+	}
+
+	/**
+	 * Resolves the given name, which may be qualified by an outer class or package, through the imports, the package, and {@code java.lang}
+	 *
+	 * @return the resolved type, or null if it was not found
+	 */
+	@Nullable
+	Type resolve(String name) {
+		refresh();
+		Optional<Type> type = resolved.get(name);
+		if (type == null) {
+			type = Optional.ofNullable(resolveUncached(name));
+			resolved.put(name, type);
+		}
+		return type.orElse(null);
+	}
+
+	/**
+	 * @return a number which changes each time the imports changed and remembered results were discarded
+	 */
+	int getGeneration() {
+		refresh();
+		return generation;
+	}
+
+	private void refresh() {
+		if (!changed && table.imports == imports.get())
+			return;
+		synchronized (this) {
+			val current = imports.get();
+			if (changed || table.imports != current) {
+				changed = false;
+				resolved.clear();
+				table = new Table(observe(current));
+				generation++;
+			}
+		}
+	}
+
+	private List<ImportDeclaration> observe(List<ImportDeclaration> imports) {
+		if (invalidator != null && imports instanceof NodeList<?>) {
+			val list = (NodeList<ImportDeclaration>) imports;
+			if (!list.isRegistered(invalidator))
+				list.register(invalidator);
+			for (ImportDeclaration anImport : list)
+				if (!anImport.isRegistered(invalidator))
+					anImport.register(invalidator, Node.ObserverRegistrationMode.SELF_PROPAGATING);
+		}
+		return imports;
+	}
+
+	@Nullable
+	private Type resolveUncached(String name) {
+		val table = this.table;
+		val dot = name.indexOf('.');
+		if (dot == -1) {
+			val imported = table.singleImports.get(name);
+			if (imported != null)
+				return Type.of(imported);
+		} else {
+			val imported = table.singleImports.get(name.substring(name.lastIndexOf('.') + 1));
+			if (imported != null && (imported.equals(name) || imported.endsWith('.' + name)))
+				return Type.of(imported);
+
+			// inner class in imported class
+			val outer = table.singleImports.get(name.substring(0, dot));
+			if (outer != null) {
+				val type = resolveIfExists(outer + name.substring(dot).replace('.', '$'));
+				if (type != null)
+					return type;
+			}
+		}
+
+		Type type = resolveInPackage(packageName, name.replace('.', '$'));
+		if (type != null)
+			return type;
+
+		if (dot == -1) {
+			for (String wildcard : table.wildcardImports) {
+				type = resolveInPackage(wildcard, name);
+				if (type != null)
+					return type;
+			}
+
+			type = resolveInPackage("java.lang", name);
+			if (type != null)
+				return type;
+		}
+
+		if (!hasPackages(name) && !Objects.equals(System.getProperty("JarTransformer.allowDefaultPackage"), "true")) {
+			return null;
+		}
+
+		return Type.of(name);
+	}
+
+	@Nullable
+	private Type resolveInPackage(String packageName, String name) {
+		Optional<Set<String>> members = packageMembers.get(packageName);
+		if (members == null) {
+			members = Optional.ofNullable(ClassPaths.classNamesIn(classPath, packageName));
+			packageMembers.put(packageName, members);
+		}
+		if (!members.isPresent())
+			return resolveIfExists(packageName + '.' + name);
+		return members.get().contains(name) ? Type.of(packageName + '.' + name) : null;
+	}
+
+	@Nullable
+	Type resolveIfExists(String s) {
+		if (classPath.classExists(s))
+			return Type.of(s);
+		return null;
+	}
+
+	/**
+	 * Imports of the compilation unit, with single type imports keyed by simple name
+	 */
+	private static final class Table {
+		final List<ImportDeclaration> imports;
+		final Map<String, String> singleImports = new HashMap<>();
+		final List<String> wildcardImports = new ArrayList<>();
+
+		Table(List<ImportDeclaration> imports) {
+			this.imports = imports;
+			for (ImportDeclaration anImport : imports) {
+				if (anImport.isStatic())
+					continue;
+				val importName = classOf(anImport);
+				if (anImport.isAsterisk())
+					wildcardImports.add(importName);
+				else
+					singleImports.putIfAbsent(importName.substring(importName.lastIndexOf('.') + 1), importName);
+			}
+		}
+	}
+
+	/**
+	 * Marks the scope as changed when an import is added, removed or changed
+	 */
+	private final class Invalidator extends PropagatingAstObserver {
+		@Override
+		public void concretePropertyChange(Node observedNode, ObservableProperty property, Object oldValue, Object newValue) {
+			changed = true;
+		}
+
+		@Override
+		public void concreteListChange(NodeList<?> observedNode, AstObserver.ListChangeType type, int index, Node nodeAddedOrRemoved) {
+			changed = true;
+		}
+
+		@Override
+		public void concreteListReplacement(NodeList<?> observedNode, int index, Node oldValue, Node newValue) {
+			changed = true;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package dev.minco.javatransformer.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+import lombok.val;
+
+import dev.minco.javatransformer.api.ClassMember;
+import dev.minco.javatransformer.internal.util.CollectionUtil;
+
+/**
+ * Members of a class grouped by name, so a member can be found without going through every member of the class
+ * <p>
+ * Kept in step with {@link #add(ClassMember)} and {@link #remove(ClassMember)}. The owner must call {@link #invalidate()} whenever members
+ * change any other way, the index is then rebuilt on the next lookup. Safe for concurrent lookups, the lists returned by {@link #named(String)}
+ * are never changed, changes replace them
+ */
+final class MemberIndex<T extends ClassMember> {
+	private final Supplier<Stream<T>> members;
+	@Nullable
+	private Map<String, List<T>> byName;
+
+	/**
+	 * @param members current members of the class
+	 */
+	MemberIndex(Supplier<Stream<T>> members) {
+		this.members = members;
+	}
+
+	/**
+	 * @return members which had the given name when they were indexed. Callers must check the name again if members may have been renamed
+	 */
+	synchronized List<T> named(String name) {
+		val named = getByName().get(name);
+		return named == null ? Collections.emptyList() : named;
+	}
+
+	/**
+	 * Called after the given member was added to the class
+	 */
+	synchronized void add(T member) {
+		if (byName == null)
+			return;
+		val named = byName.get(member.getName());
+		val updated = new ArrayList<T>(named == null ? 1 : named.size() + 1);
+		if (named != null)
+			updated.addAll(named);
+		updated.add(member);
+		byName.put(member.getName(), Collections.unmodifiableList(updated));
+	}
+
+	/**
+	 * Called after the given member was removed from the class
+	 */
+	synchronized void remove(T member) {
+		if (byName == null)
+			return;
+		val named = byName.get(member.getName());
+		if (named == null || !named.contains(member)) {
+			byName = null;
+			return;
+		}
+		val updated = new ArrayList<T>(named);
+		updated.remove(member);
+		byName.put(member.getName(), Collections.unmodifiableList(updated));
+	}
+
+	synchronized void invalidate() {
+		byName = null;
+	}
+
+	private Map<String, List<T>> getByName() {
+		Map<String, List<T>> byName = this.byName;
+		if (byName == null) {
+			byName = new HashMap<>();
+			for (T member : CollectionUtil.iterable(members.get()))
+				byName.computeIfAbsent(member.getName(), k -> new ArrayList<>(1)).add(member);
+			byName.replaceAll((name, named) -> Collections.unmodifiableList(named));
+			this.byName = byName;
+		}
+		return byName;
+	}
+}
@@ -0,0 +1,123 @@
+package dev.minco.javatransformer.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+
+import dev.minco.javatransformer.api.AccessFlags;
+import dev.minco.javatransformer.api.ClassPath;
+import dev.minco.javatransformer.api.MethodInfo;
+import dev.minco.javatransformer.api.TransformationException;
+import dev.minco.javatransformer.api.Type;
+import dev.minco.javatransformer.internal.util.BoundedCache;
+
+/**
+ * Methods of each class in a {@link ClassPath} by name, including inherited methods, and the method each call resolved to, so overloads
+ * are only matched against the argument types of a call once
+ * <p>
+ * One instance is shared by all users of a {@link ClassPath}, see {@link ClassPaths#getCache(ClassPath, Class, java.util.function.Function)}.
+ * Methods added to or removed from classes in the {@link ClassPath} after they were first looked up are not seen. The methods of least recently
+ * used classes are dropped once the table is full, and looked up again when next used
+ */
+final class MethodTable {
+	private static final long MAX_METHODS_WEIGHT = 16 * 1024 * 1024;
+	private static final long MAX_CALLS_WEIGHT = 8 * 1024 * 1024;
+	// the key, a class name, method name and argument descriptors, dominates the size of a call
+	private static final long CALL_WEIGHT = 256;
+
+	private final ClassPath classPath;
+	private final BoundedCache<String, Map<String, List<MethodInfo>>> methods = new BoundedCache<>(MethodTable::weigh, MAX_METHODS_WEIGHT);
+	private final BoundedCache<String, Optional<MethodInfo>> calls = new BoundedCache<>(it -> CALL_WEIGHT, MAX_CALLS_WEIGHT);
+
+	private MethodTable(ClassPath classPath) {
+		this.classPath = classPath;
+	}
+
+	static MethodTable of(ClassPath classPath) {
+		return ClassPaths.getCache(classPath, MethodTable.class, MethodTable::new);
+	}
+
+	/**
+	 * @return methods with the given name in the given class and its supertypes, in the order declared, then by interface, then by superclass
+	 */
+	List<MethodInfo> getMethods(Type scope, String name, boolean staticContext) {
+		val named = getMethods(scope, name).get(name);
+		if (named == null)
+			return Collections.emptyList();
+		if (!staticContext)
+			return named;
+
+		val result = new ArrayList<MethodInfo>(named.size());
+		for (MethodInfo method : named)
+			if (method.getAccessFlags().has(AccessFlags.ACC_STATIC))
+				result.add(method);
+		return result;
+	}
+
+	/**
+	 * @param key      the scope, name and argument types of the call, see {@link #callKey(Type, String, boolean, List)}
+	 * @param resolver matches the argument types against the candidates, called again for a key once it has been dropped from the table
+	 */
+	@Nullable
+	MethodInfo resolveCall(String key, Supplier<MethodInfo> resolver) {
+		return calls.get(key, () -> Optional.ofNullable(resolver.get())).orElse(null);
+	}
+
+	static String callKey(Type scope, String name, boolean staticContext, List<Type> usedTypes) {
+		val key = new StringBuilder(scope.getClassName()).append(staticContext ? '#' : '.').append(name).append('(');
+		// descriptors are all that isAssignableFrom looks at
+		for (Type usedType : usedTypes)
+			key.append(usedType.descriptor);
+		return key.append(')').toString();
+	}
+
+	private Map<String, List<MethodInfo>> getMethods(Type scope, String searchedName) {
+		return methods.get(scope.getClassName(), () -> index(scope, searchedName));
+	}
+
+	private Map<String, List<MethodInfo>> index(Type scope, String searchedName) {
+		val ci = classPath.getClassInfo(scope.getClassName());
+		if (ci == null)
+			throw new TransformationException("Couldn't get ClassInfo for {" + scope.getClassName() + "} while searching for method {" + searchedName + "} on {" + scope + "}");
+
+		Map<String, List<MethodInfo>> byName = new HashMap<>();
+		Set<MethodInfo> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		ci.getMethods().forEach(it -> add(byName, seen, it.getName(), Collections.singletonList(it)));
+
+		// since default interface methods got added, always have to look in interfaces
+		for (Type interfaceType : ci.getInterfaceTypes())
+			getMethods(interfaceType, searchedName).forEach((name, inherited) -> add(byName, seen, name, inherited));
+
+		val superType = ci.getSuperType();
+		if (superType != null)
+			getMethods(superType, searchedName).forEach((name, inherited) -> add(byName, seen, name, inherited));
+
+		return byName;
+	}
+
+	/**
+	 * @return approximate size in bytes of the lists and the methods in them, which are kept alive while the class stays cached
+	 */
+	private static long weigh(Map<String, List<MethodInfo>> byName) {
+		long weight = 64;
+		for (List<MethodInfo> named : byName.values())
+			weight += 64 + 128L * named.size();
+		return weight;
+	}
+
+	private static void add(Map<String, List<MethodInfo>> byName, Set<MethodInfo> seen, String name, List<MethodInfo> methods) {
+		for (MethodInfo method : methods)
+			if (seen.add(method))
+				byName.computeIfAbsent(name, k -> new ArrayList<>(1)).add(method);
+	}
+}
@@ -1,12 +1,14 @@
 package dev.minco.javatransformer.internal;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.val;
@@ -20,7 +22,6 @@ import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.body.TypeDeclaration;
 import com.github.javaparser.ast.body.VariableDeclarator;
-import com.github.javaparser.ast.expr.VariableDeclarationExpr;
 import com.github.javaparser.ast.type.ArrayType;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.PrimitiveType;
@@ -38,6 +39,7 @@ import dev.minco.javatransformer.api.TransformationException;
 import dev.minco.javatransformer.api.Type;
 import dev.minco.javatransformer.api.TypeVariable;
 import dev.minco.javatransformer.internal.javaparser.Expressions;
+import dev.minco.javatransformer.internal.javaparser.LocalVariableTable;
 import dev.minco.javatransformer.internal.util.JVMUtil;
 import dev.minco.javatransformer.internal.util.Joiner;
 import dev.minco.javatransformer.internal.util.NodeUtil;
@@ -55,8 +57,23 @@ public class ResolutionContext {
 	private final ClassPath classPath;
 	@Nullable
 	private final ClassMember classMember;
+	@Getter(AccessLevel.NONE)
+	private final ImportScope importScope;
+	/**
+	 * Names already passed to {@link #resolve(String)}, type parameters do not change for a context. Cleared when the imports in
+	 * {@link #importScope} change, see {@link ImportScope#getGeneration()}
+	 */
+	@Getter(AccessLevel.NONE)
+	private final Map<String, Type> resolved = new ConcurrentHashMap<>();
+	@Getter(AccessLevel.NONE)
+	private volatile int resolvedGeneration;
 
 	public ResolutionContext(@NonNull String packageName, @NonNull List<ImportDeclaration> imports, @NonNull Iterable<TypeParameter> typeParameters, @NonNull ClassPath classPath, @Nullable ClassMember classMember) {
+		this(new ImportScope(packageName, imports, classPath), packageName, imports, typeParameters, classPath, classMember);
+	}
+
+	private ResolutionContext(ImportScope importScope, String packageName, List<ImportDeclaration> imports, Iterable<TypeParameter> typeParameters, ClassPath classPath, @Nullable ClassMember classMember) {
+		this.importScope = importScope;
 		this.packageName = packageName;
 		this.imports = imports;
 		this.typeParameters = typeParameters;
@@ -69,12 +86,7 @@ public class ResolutionContext {
 		String packageName = NodeUtil.qualifiedName(cu.getPackageDeclaration().get().getName());
 		List<TypeParameter> typeParameters = NodeUtil.getTypeParameters(targetNode);
 
-		return new ResolutionContext(packageName, cu.getImports(), typeParameters, classPath, classMember);
-	}
-
-	private static boolean hasPackages(String name) {
-		// Guesses whether input name includes packages or is just classes
-		return !Character.isUpperCase(name.charAt(0)) && name.indexOf('.') != -1;
+		return new ResolutionContext(ImportScope.of(cu, packageName, classPath), packageName, cu.getImports(), typeParameters, classPath, classMember);
 	}
 
 	@Nullable
@@ -108,11 +120,7 @@ public class ResolutionContext {
 	}
 
 	private static String toString(ImportDeclaration importDeclaration) {
-		return (importDeclaration.isStatic() ? "static " : "") + classOf(importDeclaration) + (importDeclaration.isAsterisk() ? ".*" : "");
-	}
-
-	private static String classOf(ImportDeclaration importDeclaration) {
-		return NodeUtil.qualifiedName(importDeclaration.getName());
+		return (importDeclaration.isStatic() ? "static " : "") + ImportScope.classOf(importDeclaration) + (importDeclaration.isAsterisk() ? ".*" : "");
 	}
 
 	public static com.github.javaparser.ast.type.Type typeToJavaParserType(Type t) {
@@ -171,6 +179,21 @@ public class ResolutionContext {
 	@Contract(value = "!null -> !null; null -> fail", pure = true)
 	@NonNull
 	public Type resolve(@NonNull String name) {
+		val generation = importScope.getGeneration();
+		if (generation != resolvedGeneration) {
+			resolved.clear();
+			resolvedGeneration = generation;
+		}
+
+		Type type = resolved.get(name);
+		if (type == null) {
+			type = resolveUncached(name);
+			resolved.put(name, type);
+		}
+		return type;
+	}
+
+	private Type resolveUncached(String name) {
 		if (name.equals("?")) {
 			return Type.WILDCARD;
 		}
@@ -225,6 +248,14 @@ public class ResolutionContext {
 	 * @return
 	 */
 	public Type resolveNameInExpressionContext(String name) {
+		return resolveNameInExpressionContext(name, null);
+	}
+
+	/**
+	 * @param at where the name is used, so the local variable in scope there is found. If null, the first local variable with the name is used
+	 * @see #resolveNameInExpressionContext(String)
+	 */
+	public Type resolveNameInExpressionContext(String name, @Nullable Node at) {
 		switch (name) {
 			case "super":
 				return classMember.getClassInfo().getSuperType();
@@ -233,7 +264,6 @@ public class ResolutionContext {
 				return classMember.getClassInfo().getType();
 		}
 
-		// TODO look for locals
 		if (classMember instanceof SourceInfo.CallableDeclarationWrapper<?>) {
 			val cd = (SourceInfo.CallableDeclarationWrapper<?>) classMember;
 
@@ -244,25 +274,11 @@ public class ResolutionContext {
 			}
 
 			// TODO: direct node access here feels messy, abstraction? eh probably not needed
-			// TODO: don't support local type inference (val or var)
 			val body = cd.getBody();
 			if (body != null) {
-				for (VariableDeclarationExpr variableDeclarationExpr : NodeUtil.findWithinMethodScope(VariableDeclarationExpr.class, cd.getBody())) {
-					for (VariableDeclarator variable : variableDeclarationExpr.getVariables()) {
-						if (variable.getNameAsString().equals(name)) {
-							if (variable.getType().isVarType()) {
-								return Expressions.expressionToType(variable.getInitializer().get(), this, true);
-							}
-							val type = resolve(variable.getType());
-							if (type.equals(Type.of("lombok.val"))) {
-								val initializer = variable.getInitializer().orElse(null);
-								if (initializer != null) {
-									return Expressions.expressionToType(initializer, this, true);
-								}
-							}
-							return type;
-						}
-					}
+				val local = LocalVariableTable.of(body).find(name, at);
+				if (local != null) {
+					return local.getType(this::resolveLocalType);
 				}
 			}
 		}
@@ -284,6 +300,20 @@ public class ResolutionContext {
 		return Type.UNKNOWN;
 	}
 
+	private Type resolveLocalType(VariableDeclarator variable) {
+		if (variable.getType().isVarType()) {
+			return Expressions.expressionToType(variable.getInitializer().get(), this, true);
+		}
+		val type = resolve(variable.getType());
+		if (type.equals(Type.of("lombok.val"))) {
+			val initializer = variable.getInitializer().orElse(null);
+			if (initializer != null) {
+				return Expressions.expressionToType(initializer, this, true);
+			}
+		}
+		return type;
+	}
+
 	@Nullable
 	public MethodInfo resolveMethodCallType(Type scope, String name, Supplier<List<Type>> usedTypes) {
 		boolean staticContext = false;
@@ -303,49 +333,24 @@ public class ResolutionContext {
 			return smi;
 		}
 
-		List<MethodInfo> potentials = new ArrayList<>();
-		visitMethods(scope, name, potentials, staticContext);
+		val methodTable = MethodTable.of(getClassPath());
+		val potentials = methodTable.getMethods(scope, name, staticContext);
 		if (potentials.size() == 1) {
 			return potentials.get(0);
 		}
-
-		for (MethodInfo potential : potentials) {
-			if (paramTypesMatch(potential.getParameters(), usedTypes.get(), potential.getAccessFlags().has(AccessFlags.ACC_VARARGS))) {
-				return potential;
-			}
+		if (potentials.isEmpty()) {
+			return null;
 		}
 
-		return null;
-	}
-
-	private void visitMethods(Type scope, String name, List<MethodInfo> potentials, boolean staticContext) {
-		while (true) {
-			val ci = getClassPath().getClassInfo(scope.getClassName());
-
-			if (ci == null) {
-				throw new TransformationException("Couldn't get ClassInfo for {" + scope.getClassName() + "} while searching for method {" + name + "} on {" + scope + "}");
-			}
-
-			if (staticContext) {
-				ci.getMethods().filter(it -> it.getName().equals(name) && it.getAccessFlags().has(AccessFlags.ACC_STATIC)).forEach(potentials::add);
-			} else {
-				ci.getMethods().filter(it -> it.getName().equals(name)).forEach(potentials::add);
-			}
-
-			// since default interface methods got added, always have to look in interfaces
-			// if (ci.getAccessFlags().has(AccessFlags.ACC_ABSTRACT) || ci.getAccessFlags().has(AccessFlags.ACC_INTERFACE)) {
-			for (Type interfaceType : ci.getInterfaceTypes()) {
-				visitMethods(interfaceType, name, potentials, staticContext);
-			}
-
-			val superType = ci.getSuperType();
-
-			if (superType == null) {
-				return;
+		val types = usedTypes.get();
+		return methodTable.resolveCall(MethodTable.callKey(scope, name, staticContext, types), () -> {
+			for (MethodInfo potential : potentials) {
+				if (paramTypesMatch(potential.getParameters(), types, potential.getAccessFlags().has(AccessFlags.ACC_VARARGS))) {
+					return potential;
+				}
 			}
-
-			scope = superType;
-		}
+			return null;
+		});
 	}
 
 	private boolean paramTypesMatch(List<Parameter> parameters, List<Type> types, boolean allowVarargs) {
@@ -444,36 +449,13 @@ public class ResolutionContext {
 			}
 		}
 
-		if (from.isClassType()) {
-			for (Type extendedType : allExtendedTypes(from)) {
-				if (extendedType.descriptor.equals(to.descriptor)) {
-					return true;
-				}
-			}
+		if (from.isClassType() && to.isClassType()) {
+			return getClassPath().getHierarchy().isAssignableFrom(to.getClassName().replace('.', '/'), from.getClassName().replace('.', '/'));
 		}
 
 		return false;
 	}
 
-	private List<Type> allExtendedTypes(Type type) {
-		val results = new ArrayList<Type>();
-
-		Type current = type;
-		while (current != null && !current.equals(Type.OBJECT)) {
-			results.add(current);
-
-			val ci = getClassPath().getClassInfo(current.getClassName());
-
-			for (Type interfaceType : ci.getInterfaceTypes()) {
-				results.addAll(allExtendedTypes(interfaceType));
-			}
-
-			current = ci.getSuperType();
-		}
-
-		return results;
-	}
-
 	@Nullable
 	private Type resolveReal(String name) {
 		String primitive = JVMUtil.primitiveTypeToDescriptor(name, true);
@@ -493,19 +475,8 @@ public class ResolutionContext {
 
 	@Nullable
 	private Type resolveClassType(String name) {
-		String dotName = name;
-		String preDotName = null;
-		String postDotName = null;
-		if (name.indexOf('.') != -1) {
-			val index = name.indexOf('.');
-			preDotName = name.substring(0, index);
-			postDotName = name.substring(index);
-		} else {
-			dotName = '.' + name;
-		}
-
 		// inner class in current class
-		if (preDotName == null && classMember != null) {
+		if (name.indexOf('.') == -1 && classMember != null) {
 			ClassInfo ci = classMember.getClassInfo();
 
 			if (ci instanceof SourceInfo) {
@@ -537,56 +508,12 @@ public class ResolutionContext {
 			 */
 		}
 
-		for (ImportDeclaration anImport : imports) {
-			if (anImport.isAsterisk() || anImport.isStatic())
-				continue;
-
-			String importName = classOf(anImport);
-			if (importName.endsWith(dotName)) {
-				return Type.of(importName);
-			}
-
-			// inner class in imported class
-			if (preDotName != null && importName.endsWith(preDotName)) {
-				val type = resolveIfExists(importName + postDotName.replace('.', '$'));
-				if (type != null) {
-					return type;
-				}
-			}
-		}
-
-		Type type = resolveIfExists(packageName + '.' + name.replace('.', '$'));
-		if (type != null) {
-			return type;
-		}
-
-		for (ImportDeclaration anImport : imports) {
-			if (!anImport.isAsterisk() || anImport.isStatic())
-				continue;
-
-			type = resolveIfExists(classOf(anImport) + '.' + name);
-			if (type != null) {
-				return type;
-			}
-		}
-
-		type = resolveIfExists("java.lang." + name);
-		if (type != null) {
-			return type;
-		}
-
-		if (!hasPackages(name) && !Objects.equals(System.getProperty("JarTransformer.allowDefaultPackage"), "true")) {
-			return null;
-		}
-
-		return Type.of(name);
+		return importScope.resolve(name);
 	}
 
 	@Nullable
 	private Type resolveIfExists(String s) {
-		if (classPath.classExists(s))
-			return Type.of(s);
-		return null;
+		return importScope.resolveIfExists(s);
 	}
 
 	/**
@@ -607,7 +534,7 @@ public class ResolutionContext {
 
 				if (bounds != null && !bounds.isEmpty()) {
 					if (bounds.size() == 1) {
-						extends_ = resolve(bounds.get(0)).descriptor;
+						extends_ = resolveErasure(bounds.get(0)).descriptor;
 					} else {
 						throw new TransformationException("Bounds must have one object, found: " + bounds);
 					}
@@ -620,6 +547,13 @@ public class ResolutionContext {
 		return null;
 	}
 
+	/**
+	 * Resolves a type parameter bound without its type arguments, which may refer back to the parameter being resolved: {@code T extends Comparable<T>}
+	 */
+	private Type resolveErasure(ClassOrInterfaceType bound) {
+		return resolve(extractReal(bound.asString()));
+	}
+
 	public String typeToString(Type t) {
 		return typeToString(t, true);
 	}
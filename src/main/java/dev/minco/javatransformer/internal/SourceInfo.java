@@ -2,7 +2,9 @@ package dev.minco.javatransformer.internal;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -10,7 +12,10 @@ import java.util.stream.Stream;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.val;
 
 import org.jetbrains.annotations.Nullable;
@@ -42,6 +47,8 @@ import com.github.javaparser.ast.nodeTypes.NodeWithModifiers;
 import com.github.javaparser.ast.nodeTypes.NodeWithOptionalBlockStmt;
 import com.github.javaparser.ast.nodeTypes.NodeWithParameters;
 import com.github.javaparser.ast.nodeTypes.NodeWithSimpleName;
+import com.github.javaparser.ast.observer.AstObserverAdapter;
+import com.github.javaparser.ast.observer.ObservableProperty;
 import com.github.javaparser.ast.stmt.BlockStmt;
 import com.github.javaparser.ast.stmt.ThrowStmt;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
@@ -76,6 +83,44 @@ public class SourceInfo implements ClassInfo {
 	private final List<Annotation> annotations = getAnnotationsInternal();
 	@Getter(lazy = true)
 	private final ResolutionContext context = getContextInternal();
+	/**
+	 * Wrappers are reused for each declaration so their resolution contexts and code fragments are kept between lookups. Synchronized, as
+	 * {@link SourceInfo}s in a {@link ClassPath} are shared by every thread looking up classes
+	 */
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private final Map<BodyDeclaration<?>, BodyDeclarationWrapper<?>> methodInfos = Collections.synchronizedMap(new IdentityHashMap<>());
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private final Map<FieldDeclaration, FieldDeclarationWrapper> fieldInfos = Collections.synchronizedMap(new IdentityHashMap<>());
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private final MemberIndex<MethodInfo> methodIndex = new MemberIndex<>(() -> {
+		observeMembers();
+		return getMethods();
+	});
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private final MemberIndex<FieldInfo> fieldIndex = new MemberIndex<>(() -> {
+		observeMembers();
+		return getFields();
+	});
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private final MembersObserver membersObserver = new MembersObserver();
+	/**
+	 * Set while this {@link SourceInfo} changes the members itself, it then keeps the indexes up to date
+	 */
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private boolean updatingMembers;
 
 	static void changeTypeContext(ResolutionContext old, ResolutionContext new_, FieldDeclaration f) {
 		val v = f.getVariable(0);
@@ -205,6 +250,7 @@ public class SourceInfo implements ClassInfo {
 		}
 
 		addMember(declaration);
+		methodIndex.add(methodInfo(declaration));
 	}
 
 	@Override
@@ -224,14 +270,43 @@ public class SourceInfo implements ClassInfo {
 
 		addMember(fieldDeclaration);
 
-		val result = new FieldDeclarationWrapper(fieldDeclaration);
+		val result = fieldInfo(fieldDeclaration);
+		fieldIndex.add(result);
 		if (!field.similar(result))
 			throw new TransformationException("After adding to class, didn't match. added: " + field + " result: " + result);
 	}
 
 	private void addMember(BodyDeclaration<?> bodyDeclaration) {
 		bodyDeclaration.setParentNode(type.get());
-		type.get().getMembers().add(bodyDeclaration);
+		updatingMembers = true;
+		try {
+			type.get().getMembers().add(bodyDeclaration);
+		} finally {
+			updatingMembers = false;
+		}
+	}
+
+	private boolean removeMember(BodyDeclaration<?> bodyDeclaration) {
+		updatingMembers = true;
+		try {
+			return type.get().getMembers().remove(bodyDeclaration);
+		} finally {
+			updatingMembers = false;
+		}
+	}
+
+	/**
+	 * Registers {@link #membersObserver} on the declaration and its current member list, called before the indexes are built
+	 */
+	private void observeMembers() {
+		val declaration = type.get();
+		synchronized (membersObserver) {
+			if (!declaration.isRegistered(membersObserver))
+				declaration.register(membersObserver);
+			val members = declaration.getMembers();
+			if (!members.isRegistered(membersObserver))
+				members.register(membersObserver);
+		}
 	}
 
 	@Override
@@ -241,7 +316,11 @@ public class SourceInfo implements ClassInfo {
 		if (callableDeclarationWrapper == null)
 			throw new TransformationException("Method " + method + " can not be removed as it is not present");
 
-		type.get().getMembers().remove(callableDeclarationWrapper.declaration);
+		val declaration = callableDeclarationWrapper.declaration;
+		if (removeMember(declaration)) {
+			methodIndex.remove(methodInfo(declaration));
+			methodInfos.remove(declaration);
+		}
 	}
 
 	@Override
@@ -251,7 +330,29 @@ public class SourceInfo implements ClassInfo {
 		if (fieldDeclarationWrapper == null)
 			throw new TransformationException("Field " + field + " can not be removed as it is not present");
 
-		type.get().getMembers().remove(fieldDeclarationWrapper.declaration);
+		val declaration = fieldDeclarationWrapper.declaration;
+		if (removeMember(declaration)) {
+			fieldIndex.remove(fieldInfo(declaration));
+			fieldInfos.remove(declaration);
+		}
+	}
+
+	@Nullable
+	@Override
+	public MethodInfo get(MethodInfo like) {
+		for (MethodInfo methodInfo : methodIndex.named(like.getName()))
+			if (like.similar(methodInfo))
+				return methodInfo;
+		return null;
+	}
+
+	@Nullable
+	@Override
+	public FieldInfo get(FieldInfo like) {
+		for (FieldInfo fieldInfo : fieldIndex.named(like.getName()))
+			if (like.similar(fieldInfo))
+				return fieldInfo;
+		return null;
 	}
 
 	@Nullable
@@ -298,7 +399,15 @@ public class SourceInfo implements ClassInfo {
 	public Stream<MethodInfo> getMethods() {
 		return type.get().getMembers().stream()
 			.filter(it -> it instanceof CallableDeclaration<?> || it instanceof AnnotationMemberDeclaration)
-			.map(this::getMethodInfoWrapper);
+			.map(this::methodInfo);
+	}
+
+	private BodyDeclarationWrapper<?> methodInfo(BodyDeclaration<?> declaration) {
+		return methodInfos.computeIfAbsent(declaration, this::getMethodInfoWrapper);
+	}
+
+	private FieldDeclarationWrapper fieldInfo(FieldDeclaration declaration) {
+		return fieldInfos.computeIfAbsent(declaration, FieldDeclarationWrapper::new);
 	}
 
 	private BodyDeclarationWrapper<?> getMethodInfoWrapper(BodyDeclaration<?> x) {
@@ -318,7 +427,7 @@ public class SourceInfo implements ClassInfo {
 	public Stream<FieldInfo> getFields() {
 		Stream<FieldInfo> fields = type.get().getMembers().stream()
 			.filter(x -> x instanceof FieldDeclaration)
-			.map(x -> new FieldDeclarationWrapper((FieldDeclaration) x));
+			.map(x -> fieldInfo((FieldDeclaration) x));
 		if (type.get() instanceof EnumDeclaration) {
 			fields = Stream.concat(type.get().getChildNodes().stream()
 				.filter(it -> it instanceof EnumConstantDeclaration)
@@ -391,6 +500,8 @@ public class SourceInfo implements ClassInfo {
 		@Override
 		public void setName(String name) {
 			declaration.getVariables().get(0).setName(name);
+			if (fieldInfos.get(declaration) == this)
+				fieldIndex.invalidate();
 		}
 
 		@Override
@@ -450,6 +561,8 @@ public class SourceInfo implements ClassInfo {
 		@Override
 		public void setName(String name) {
 			declaration.setName(name);
+			if (methodInfos.get(declaration) == this)
+				methodIndex.invalidate();
 		}
 
 		@Override
@@ -634,6 +747,36 @@ public class SourceInfo implements ClassInfo {
 		@Override
 		public void setName(String name) {
 			declaration.setName(name);
+			if (methodInfos.get(declaration) == this)
+				methodIndex.invalidate();
+		}
+	}
+
+	/**
+	 * Invalidates the member indexes when members are added, removed or replaced directly on the declaration instead of through this {@link SourceInfo}
+	 */
+	private final class MembersObserver extends AstObserverAdapter {
+		@Override
+		public void propertyChange(Node observedNode, ObservableProperty property, Object oldValue, Object newValue) {
+			if (property == ObservableProperty.MEMBERS)
+				membersChanged();
+		}
+
+		@Override
+		public void listChange(NodeList<?> observedNode, ListChangeType change, int index, Node nodeAddedOrRemoved) {
+			membersChanged();
+		}
+
+		@Override
+		public void listReplacement(NodeList<?> observedNode, int index, Node oldNode, Node newNode) {
+			membersChanged();
+		}
+
+		private void membersChanged() {
+			if (updatingMembers)
+				return;
+			methodIndex.invalidate();
+			fieldIndex.invalidate();
 		}
 	}
 }
@@ -9,11 +9,13 @@ import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.tree.ClassNode;
 
 public class AsmUtil {
+	/**
+	 * Reads the header and members of a class. Method code is read when first needed, see {@link LazyClassNode}
+	 */
 	@Nonnull
 	public static ClassNode getClassNode(@NonNull byte[] data, @Nullable Holder<ClassReader> readerHolder) {
-		ClassNode node = new ClassNode();
 		ClassReader reader = new ClassReader(data);
-		reader.accept(node, ClassReader.EXPAND_FRAMES);
+		ClassNode node = new LazyClassNode(reader);
 
 		if (readerHolder != null)
 			readerHolder.value = reader;
@@ -0,0 +1,262 @@
+package dev.minco.javatransformer.internal.asm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import lombok.val;
+
+import dev.minco.javatransformer.api.AccessFlags;
+import dev.minco.javatransformer.api.ClassInfo;
+import dev.minco.javatransformer.api.ClassPath;
+import dev.minco.javatransformer.api.TransformationException;
+import dev.minco.javatransformer.api.Type;
+import dev.minco.javatransformer.api.TypeHierarchy;
+import dev.minco.javatransformer.internal.ClassPaths;
+import dev.minco.javatransformer.internal.util.BoundedCache;
+
+/**
+ * Resolves the supertypes and subtypes of classes through a {@link ClassPath} instead of loading them, for {@link FilteringClassWriter#getCommonSuperClass(String, String)}
+ * and type resolution
+ * <p>
+ * Results are memoised up to a fixed size, least recently used classes are dropped and looked up again when next used. One instance is shared for each {@link ClassPath}, see {@link ClassPath#getHierarchy()}. Class names are in internal format:
+ * {@code package1/package2/ClassName}
+ * <p>
+ * Subtypes are found by reading the headers of every class in the {@link ClassPath} once, on the first subtype query. Classes added to the
+ * {@link ClassPath} after that are not included
+ */
+public final class ClassHierarchy implements TypeHierarchy {
+	private static final String OBJECT = "java/lang/Object";
+	private static final long MAX_NODES_WEIGHT = 16 * 1024 * 1024;
+
+	private final ClassPath classPath;
+	private final BoundedCache<String, Node> nodes = new BoundedCache<>(Node::getWeight, MAX_NODES_WEIGHT);
+	@Nullable
+	private volatile SubtypeIndex subtypeIndex;
+
+	private ClassHierarchy(ClassPath classPath) {
+		this.classPath = classPath;
+	}
+
+	public static ClassHierarchy of(ClassPath classPath) {
+		return ClassPaths.getCache(classPath, ClassHierarchy.class, ClassHierarchy::new);
+	}
+
+	/**
+	 * Same result as the default {@link org.objectweb.asm.ClassWriter#getCommonSuperClass(String, String)}
+	 *
+	 * @throws TypeNotPresentException if either class, or one of their supertypes, is not in the {@link ClassPath}
+	 */
+	public String getCommonSuperClass(String a, String b) {
+		if (a.equals(b))
+			return a;
+		val first = getNode(a);
+		val second = getNode(b);
+		if (second.ancestors.contains(a))
+			return a;
+		if (first.ancestors.contains(b))
+			return b;
+		if (first.isInterface || second.isInterface)
+			return OBJECT;
+
+		Node current = first;
+		while (current.superName != null) {
+			if (second.ancestors.contains(current.superName))
+				return current.superName;
+			current = getNode(current.superName);
+		}
+		return OBJECT;
+	}
+
+	@Override
+	public boolean isAssignableFrom(String possibleSuperType, String type) {
+		return type.equals(possibleSuperType) || getNode(type).ancestors.contains(possibleSuperType);
+	}
+
+	/**
+	 * @return the direct superclass of the given class, or null for {@code java/lang/Object}
+	 */
+	@Nullable
+	public String getSuperClass(String name) {
+		return getNode(name).superName;
+	}
+
+	public boolean isInterface(String name) {
+		return getNode(name).isInterface;
+	}
+
+	@Override
+	public Set<String> getSuperTypes(String name) {
+		return Collections.unmodifiableSet(getNode(name).ancestors);
+	}
+
+	@Override
+	public Set<String> getAllInterfaces(String name) {
+		return Collections.unmodifiableSet(getNode(name).allInterfaces);
+	}
+
+	/**
+	 * @return classes and interfaces which directly extend or implement the given type
+	 */
+	public Set<String> getDirectSubtypes(String name) {
+		val direct = getSubtypeIndex().direct.get(name);
+		return direct == null ? Collections.emptySet() : Collections.unmodifiableSet(direct);
+	}
+
+	@Override
+	public Set<String> getSubtypes(String name) {
+		val index = getSubtypeIndex();
+		val all = index.all.get(name);
+		if (all != null)
+			return all;
+
+		val result = new LinkedHashSet<String>();
+		val queue = new ArrayDeque<String>();
+		queue.add(name);
+		while (!queue.isEmpty()) {
+			val direct = index.direct.get(queue.poll());
+			if (direct != null)
+				for (String subtype : direct)
+					if (result.add(subtype))
+						queue.add(subtype);
+		}
+		val unmodifiable = Collections.unmodifiableSet(result);
+		val existing = index.all.putIfAbsent(name, unmodifiable);
+		return existing == null ? unmodifiable : existing;
+	}
+
+	@Override
+	public List<String> getImplementors(String name) {
+		val index = getSubtypeIndex();
+		val result = new ArrayList<String>();
+		for (String subtype : getSubtypes(name))
+			if (!index.interfaces.contains(subtype))
+				result.add(subtype);
+		return result;
+	}
+
+	private SubtypeIndex getSubtypeIndex() {
+		SubtypeIndex index = subtypeIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = subtypeIndex;
+				if (index == null)
+					subtypeIndex = index = new SubtypeIndex(classPath);
+			}
+		}
+		return index;
+	}
+
+	private Node getNode(String name) {
+		return getNode(name, new LinkedHashSet<>());
+	}
+
+	/**
+	 * Supertypes are resolved before this class is stored, so loading a class never holds its cache slot while waiting for another class.
+	 * Otherwise two threads resolving the same classes in different orders could wait for each other
+	 *
+	 * @param visiting classes whose supertypes are being resolved by this call, to detect cycles
+	 */
+	private Node getNode(String name, Set<String> visiting) {
+		val cached = nodes.getIfPresent(name);
+		if (cached != null)
+			return cached;
+		if (!visiting.add(name))
+			throw new TransformationException("Cyclic class hierarchy: " + String.join(" -> ", visiting) + " -> " + name);
+
+		try {
+			val info = classPath.getClassInfo(name.replace('/', '.'));
+			if (info == null)
+				throw new TypeNotPresentException(name.replace('/', '.'), null);
+
+			val superName = internalName(info.getSuperType());
+			val interfaces = new ArrayList<String>();
+			for (Type type : info.getInterfaceTypes())
+				interfaces.add(internalName(type));
+
+			val ancestors = new LinkedHashSet<String>();
+			val allInterfaces = new HashSet<String>();
+			if (superName != null) {
+				val superNode = getNode(superName, visiting);
+				ancestors.add(superName);
+				ancestors.addAll(superNode.ancestors);
+				allInterfaces.addAll(superNode.allInterfaces);
+			}
+			for (String itf : interfaces) {
+				val interfaceNode = getNode(itf, visiting);
+				ancestors.add(itf);
+				ancestors.addAll(interfaceNode.ancestors);
+				allInterfaces.add(itf);
+				allInterfaces.addAll(interfaceNode.allInterfaces);
+			}
+			val isInterface = info.getAccessFlags().has(AccessFlags.ACC_INTERFACE);
+			if (isInterface)
+				ancestors.add(OBJECT);
+
+			val node = new Node(OBJECT.equals(name) ? null : superName, isInterface, ancestors, allInterfaces);
+			// another thread may have stored the same class meanwhile, its node is equivalent
+			return nodes.get(name, () -> node);
+		} finally {
+			visiting.remove(name);
+		}
+	}
+
+	@Nullable
+	private static String internalName(@Nullable Type type) {
+		return type == null ? null : type.getClassName().replace('.', '/');
+	}
+
+	private static final class Node {
+		@Nullable
+		final String superName;
+		final boolean isInterface;
+		final Set<String> ancestors;
+		final Set<String> allInterfaces;
+
+		Node(@Nullable String superName, boolean isInterface, Set<String> ancestors, Set<String> allInterfaces) {
+			this.superName = superName;
+			this.isInterface = isInterface;
+			this.ancestors = ancestors;
+			this.allInterfaces = allInterfaces;
+		}
+
+		long getWeight() {
+			return 64 + 48L * (ancestors.size() + allInterfaces.size());
+		}
+	}
+
+	/**
+	 * Direct subtypes of every class in a {@link ClassPath}, keyed by supertype
+	 */
+	private static final class SubtypeIndex {
+		final Map<String, Set<String>> direct = new HashMap<>();
+		final Set<String> interfaces = new HashSet<>();
+		final Map<String, Set<String>> all = new ConcurrentHashMap<>();
+
+		SubtypeIndex(ClassPath classPath) {
+			for (ClassInfo info : classPath) {
+				val name = info.getName().replace('.', '/');
+				if (info.getAccessFlags().has(AccessFlags.ACC_INTERFACE))
+					interfaces.add(name);
+				val superName = internalName(info.getSuperType());
+				if (superName != null && !OBJECT.equals(name))
+					addSubtype(superName, name);
+				for (Type type : info.getInterfaceTypes())
+					addSubtype(type.getClassName().replace('.', '/'), name);
+			}
+		}
+
+		private void addSubtype(String superName, String name) {
+			direct.computeIfAbsent(superName, k -> new LinkedHashSet<>()).add(name);
+		}
+	}
+}
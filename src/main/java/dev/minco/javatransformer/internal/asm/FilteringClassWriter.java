@@ -3,20 +3,47 @@ package dev.minco.javatransformer.internal.asm;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 import lombok.val;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 
+import dev.minco.javatransformer.api.ClassPath;
+
 public class FilteringClassWriter extends ClassWriter {
 	public final Map<String, String> filters = new HashMap<>();
+	@Nullable
+	private final ClassPath classPath;
 
 	public FilteringClassWriter(int flags) {
-		super(flags);
+		this(flags, null);
 	}
 
 	public FilteringClassWriter(ClassReader classReader, int flags) {
+		this(classReader, flags, null);
+	}
+
+	/**
+	 * @param classPath used to find common super classes when computing frames, instead of loading classes
+	 */
+	public FilteringClassWriter(int flags, @Nullable ClassPath classPath) {
+		super(flags);
+		this.classPath = classPath;
+	}
+
+	/**
+	 * @param classPath used to find common super classes when computing frames, instead of loading classes
+	 */
+	public FilteringClassWriter(ClassReader classReader, int flags, @Nullable ClassPath classPath) {
 		super(classReader, flags);
+		this.classPath = classPath;
+	}
+
+	@Nullable
+	public ClassPath getClassPath() {
+		return classPath;
 	}
 
 	public static void addFilter(Map<String, String> filters, String a, String b) {
@@ -74,6 +101,14 @@ public class FilteringClassWriter extends ClassWriter {
 
 	@Override
 	protected String getCommonSuperClass(final String a, final String b) {
+		if (classPath != null) {
+			try {
+				return ClassHierarchy.of(classPath).getCommonSuperClass(a, b);
+			} catch (TypeNotPresentException ignored) {
+				// not in the class path, fall back to loading the classes
+			}
+		}
+
 		if ((a.indexOf('.') != -1 && !a.startsWith("java.")) || (b.indexOf('.') != -1 && !b.startsWith("java.")))
 			throw new UnsupportedOperationException();
 
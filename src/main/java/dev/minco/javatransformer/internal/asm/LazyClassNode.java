@@ -0,0 +1,268 @@
+package dev.minco.javatransformer.internal.asm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import lombok.val;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * A {@link ClassNode} which is read with {@link ClassReader#SKIP_CODE}
+ * <p>
+ * Method code is read from the original class file the first time it is needed by {@link #loadCode(MethodNode)}.
+ * {@link #accept(ClassVisitor)} loads any code which has not been read yet before visiting the class.
+ * {@link #write(FilteringClassWriter)} instead copies methods which have not been changed directly from the original class file.
+ * <p>
+ * Code is read with {@link ClassReader#EXPAND_FRAMES}, as ASM does not allow compressed and expanded frames in the same method and
+ * transformers which add {@link org.objectweb.asm.tree.FrameNode}s add expanded ones. Frames are only expanded for methods whose code
+ * is read, methods copied from the original class file keep their compressed frames.
+ */
+public class LazyClassNode extends ClassNode {
+	private final ClassReader reader;
+	/**
+	 * Methods which have not had their code read yet, mapped to their name + descriptor when the class was read
+	 */
+	private final Map<MethodNode, String> withoutCode = new IdentityHashMap<>();
+	private final Map<MethodNode, MethodHeader> originalHeaders = new IdentityHashMap<>();
+	private final Set<MethodNode> changedControlFlow = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	public LazyClassNode(ClassReader reader) {
+		super(Opcodes.ASM9);
+		this.reader = reader;
+		reader.accept(this, ClassReader.SKIP_CODE);
+	}
+
+	@Override
+	public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+		val method = (MethodNode) super.visitMethod(access, name, descriptor, signature, exceptions);
+		if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0)
+			withoutCode.put(method, name + descriptor);
+		return method;
+	}
+
+	@Override
+	public void visitEnd() {
+		super.visitEnd();
+		for (MethodNode method : methods)
+			originalHeaders.put(method, new MethodHeader(method));
+	}
+
+	/**
+	 * @return whether the code of the given method has been read, or it has no code
+	 */
+	public synchronized boolean isCodeLoaded(MethodNode method) {
+		return !withoutCode.containsKey(method);
+	}
+
+	/**
+	 * Reads the code of the given method if it has not been read yet
+	 */
+	public synchronized void loadCode(MethodNode method) {
+		val key = withoutCode.remove(method);
+		if (key == null)
+			return;
+
+		val targets = new HashMap<String, MethodNode>();
+		targets.put(key, method);
+		load(targets);
+	}
+
+	/**
+	 * Reads the code of all methods which have not had their code read yet
+	 */
+	public synchronized void loadAllCode() {
+		if (withoutCode.isEmpty())
+			return;
+
+		val targets = new HashMap<String, MethodNode>();
+		withoutCode.forEach((method, key) -> targets.put(key, method));
+		withoutCode.clear();
+		load(targets);
+	}
+
+	private void load(Map<String, MethodNode> targets) {
+		val loaded = new HashMap<MethodNode, MethodNode>();
+		reader.accept(new ClassVisitor(Opcodes.ASM9) {
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+				val target = targets.get(name + descriptor);
+				if (target == null)
+					return null;
+				val code = new MethodNode(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+				loaded.put(target, code);
+				return code;
+			}
+		}, ClassReader.EXPAND_FRAMES);
+
+		loaded.forEach((target, code) -> {
+			target.instructions = code.instructions;
+			target.tryCatchBlocks = code.tryCatchBlocks;
+			target.localVariables = code.localVariables;
+			target.visibleLocalVariableAnnotations = code.visibleLocalVariableAnnotations;
+			target.invisibleLocalVariableAnnotations = code.invisibleLocalVariableAnnotations;
+			target.maxStack = code.maxStack;
+			target.maxLocals = code.maxLocals;
+		});
+	}
+
+	/**
+	 * Marks that the control flow of the given method has changed, so its frames must be computed when it is written
+	 */
+	public synchronized void markControlFlowChanged(MethodNode method) {
+		changedControlFlow.add(method);
+	}
+
+	/**
+	 * @return whether any method has been marked with {@link #markControlFlowChanged(MethodNode)}
+	 */
+	public synchronized boolean hasControlFlowChanges() {
+		return !changedControlFlow.isEmpty();
+	}
+
+	@Override
+	public void accept(ClassVisitor classVisitor) {
+		loadAllCode();
+		super.accept(classVisitor);
+	}
+
+	/**
+	 * Writes this class to a writer which was created from the same {@link ClassReader} as this node
+	 * <p>
+	 * Methods which have not had their code read and have not been changed are copied from the original class file without being parsed.
+	 * Frames are only computed for methods marked with {@link #markControlFlowChanged(MethodNode)}.
+	 */
+	public synchronized void write(FilteringClassWriter writer) {
+		super.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+				return null;
+			}
+
+			@Override
+			public void visitEnd() {
+			}
+		});
+
+		val unchanged = new HashMap<String, MethodNode>();
+		val changed = Collections.newSetFromMap(new IdentityHashMap<MethodNode, Boolean>());
+		for (MethodNode method : methods)
+			if (isUnchanged(method))
+				unchanged.put(originalHeaders.get(method).key, method);
+			else
+				changed.add(method);
+
+		val pending = new ArrayList<MethodNode>(methods);
+		int[] next = {0};
+		reader.accept(new ClassVisitor(Opcodes.ASM9) {
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+				val method = unchanged.get(name + descriptor);
+				if (method == null)
+					return null;
+				// keep the original order by writing changed methods which came before this one first
+				while (next[0] < pending.size()) {
+					val current = pending.get(next[0]++);
+					if (current == method)
+						break;
+					if (changed.contains(current))
+						writeMethod(current, writer);
+				}
+				// a MethodWriter returned for the same reader copies the method as is
+				return writer.visitMethod(access, name, descriptor, signature, exceptions);
+			}
+		}, 0);
+
+		while (next[0] < pending.size()) {
+			val current = pending.get(next[0]++);
+			if (changed.contains(current))
+				writeMethod(current, writer);
+		}
+
+		writer.visitEnd();
+	}
+
+	private boolean isUnchanged(MethodNode method) {
+		val header = originalHeaders.get(method);
+		return header != null && header.matches(method) && (!header.hasCode || withoutCode.containsKey(method));
+	}
+
+	private void writeMethod(MethodNode method, FilteringClassWriter writer) {
+		loadCode(method);
+		if (!changedControlFlow.contains(method)) {
+			method.accept(writer);
+			return;
+		}
+
+		val frameWriter = new FilteringClassWriter(ClassWriter.COMPUTE_FRAMES, writer.getClassPath());
+		frameWriter.visit(version, access, name, signature, superName, interfaces.toArray(new String[0]));
+		method.accept(frameWriter);
+		frameWriter.visitEnd();
+		new ClassReader(frameWriter.toByteArray()).accept(new ClassVisitor(Opcodes.ASM9) {
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+				return writer.visitMethod(access, name, descriptor, signature, exceptions);
+			}
+		}, 0);
+	}
+
+	/**
+	 * The parts of a method which are copied as is when it is unchanged
+	 * <p>
+	 * Lists are compared by identity and size, changes made through {@link dev.minco.javatransformer.api.MethodInfo} replace or grow them.
+	 */
+	private static final class MethodHeader {
+		final String key;
+		final boolean hasCode;
+		final int access;
+		final String name;
+		final String desc;
+		final String signature;
+		final List<String> exceptions;
+		final Object[] lists;
+		final int[] sizes;
+
+		MethodHeader(MethodNode method) {
+			key = method.name + method.desc;
+			hasCode = (method.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0;
+			access = method.access;
+			name = method.name;
+			desc = method.desc;
+			signature = method.signature;
+			exceptions = new ArrayList<>(method.exceptions);
+			lists = lists(method);
+			sizes = new int[lists.length];
+			for (int i = 0; i < lists.length; i++)
+				sizes[i] = lists[i] instanceof List ? ((List<?>) lists[i]).size() : -1;
+		}
+
+		private static Object[] lists(MethodNode method) {
+			return new Object[]{method.visibleAnnotations, method.invisibleAnnotations, method.visibleTypeAnnotations,
+				method.invisibleTypeAnnotations, method.visibleParameterAnnotations, method.invisibleParameterAnnotations,
+				method.annotationDefault, method.parameters, method.attrs};
+		}
+
+		boolean matches(MethodNode method) {
+			if (access != method.access || !name.equals(method.name) || !desc.equals(method.desc) ||
+				!Objects.equals(signature, method.signature) || !exceptions.equals(method.exceptions))
+				return false;
+			val current = lists(method);
+			for (int i = 0; i < current.length; i++)
+				if (current[i] != lists[i] || (current[i] instanceof List && ((List<?>) current[i]).size() != sizes[i]))
+					return false;
+			return true;
+		}
+	}
+}
@@ -3,6 +3,8 @@ package dev.minco.javatransformer.internal.javaparser;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.TypeDeclaration;
 
@@ -26,4 +28,29 @@ public final class CompilationUnitInfo {
 			getSourceInfos(typeDeclaration.getChildNodesByType((Class<TypeDeclaration<?>>) (Object) TypeDeclaration.class), classPath, sourceInfos, packageName + typeDeclaration.getNameAsString() + '$');
 		}
 	}
+
+	/**
+	 * Finds a type declared in the given compilation unit by the name {@link #getSourceInfos(CompilationUnit, ClassPath)} would give it
+	 */
+	@Nullable
+	public static TypeDeclaration<?> getTypeDeclaration(CompilationUnit compilationUnit, String className) {
+		String packageName = compilationUnit.getPackageDeclaration().map(it -> it.getNameAsString() + '.').orElse("");
+		return getTypeDeclaration(compilationUnit.getTypes(), packageName, className);
+	}
+
+	@Nullable
+	@SuppressWarnings({"unchecked", "deprecation"})
+	private static TypeDeclaration<?> getTypeDeclaration(Iterable<TypeDeclaration<?>> typeDeclarations, String packageName, String className) {
+		for (TypeDeclaration<?> typeDeclaration : typeDeclarations) {
+			String name = packageName + typeDeclaration.getNameAsString();
+			if (name.equals(className))
+				return typeDeclaration;
+			if (className.startsWith(name + '$')) {
+				TypeDeclaration<?> inner = getTypeDeclaration(typeDeclaration.getChildNodesByType((Class<TypeDeclaration<?>>) (Object) TypeDeclaration.class), name + '$', className);
+				if (inner != null)
+					return inner;
+			}
+		}
+		return null;
+	}
 }
@@ -74,7 +74,7 @@ public final class Expressions {
 		} else if (e instanceof BinaryExpr) {
 			return expressionToType(((BinaryExpr) e).getLeft(), context, false);
 		} else if (e instanceof NameExpr || e instanceof ThisExpr || e instanceof SuperExpr) {
-			return context.resolveNameInExpressionContext(e.toString());
+			return context.resolveNameInExpressionContext(e.toString(), e);
 		} else if (e instanceof ArrayCreationExpr) {
 			val ace = (ArrayCreationExpr) e;
 			return context.resolve(ace.createdType());
@@ -0,0 +1,231 @@
+package dev.minco.javatransformer.internal.javaparser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.nodeTypes.NodeWithStatements;
+import com.github.javaparser.ast.nodeTypes.SwitchNode;
+import com.github.javaparser.ast.observer.AstObserver;
+import com.github.javaparser.ast.observer.ObservableProperty;
+import com.github.javaparser.ast.observer.PropagatingAstObserver;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.ForEachStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.SwitchEntry;
+import com.github.javaparser.ast.stmt.TryStmt;
+
+import dev.minco.javatransformer.api.Type;
+
+/**
+ * Local variables declared in a method body, by name and scope, so a name can be resolved to the declaration visible where it is used
+ * without searching the whole body
+ * <p>
+ * Built once for each body and stored on it. Discarded as soon as anything in the body changes. Like
+ * {@link dev.minco.javatransformer.internal.util.NodeUtil#findWithinMethodScope(Class, Node)}, does not include variables declared in
+ * lambdas or anonymous classes
+ */
+public final class LocalVariableTable {
+	private static final DataKey<LocalVariableTable> KEY = new DataKey<LocalVariableTable>() {};
+	private static final Invalidator INVALIDATOR = new Invalidator();
+
+	private final BlockStmt body;
+	private final Map<String, List<Local>> locals = new HashMap<>();
+	private final Map<Node, Scope> scopes = new IdentityHashMap<>();
+
+	private LocalVariableTable(BlockStmt body) {
+		this.body = body;
+		addLocals(body, scope(body), null);
+	}
+
+	/**
+	 * @return the table for the given body, built if the body has not been looked at yet or has changed since
+	 */
+	public static LocalVariableTable of(BlockStmt body) {
+		synchronized (body) {
+			if (body.containsData(KEY))
+				return body.getData(KEY);
+			val table = new LocalVariableTable(body);
+			if (!body.isRegistered(INVALIDATOR))
+				body.register(INVALIDATOR, Node.ObserverRegistrationMode.SELF_PROPAGATING);
+			body.setData(KEY, table);
+			return table;
+		}
+	}
+
+	private static boolean isScope(Node node) {
+		return node instanceof BlockStmt || node instanceof SwitchNode || (node instanceof SwitchEntry && !isStatementGroup(node)) || node instanceof ForStmt || node instanceof ForEachStmt || node instanceof TryStmt;
+	}
+
+	/**
+	 * @return whether the node is a {@code case X:} entry, these share the scope of their switch so variables declared in one are visible in later entries
+	 */
+	private static boolean isStatementGroup(Node node) {
+		return node instanceof SwitchEntry && ((SwitchEntry) node).getType() == SwitchEntry.Type.STATEMENT_GROUP;
+	}
+
+	private Scope scope(Node node) {
+		return scopes.computeIfAbsent(node, Scope::new);
+	}
+
+	private void addLocals(Node node, Scope scope, @Nullable Node statement) {
+		for (Node child : node.getChildNodes()) {
+			if (child instanceof LambdaExpr || child instanceof ObjectCreationExpr)
+				continue;
+
+			val childStatement = node == scope.node || isStatementGroup(node) ? child : statement;
+			if (child instanceof VariableDeclarationExpr)
+				for (VariableDeclarator variable : ((VariableDeclarationExpr) child).getVariables())
+					locals.computeIfAbsent(variable.getNameAsString(), k -> new ArrayList<>(1)).add(new Local(variable, scope, childStatement));
+
+			addLocals(child, isScope(child) ? scope(child) : scope, childStatement);
+		}
+	}
+
+	/**
+	 * @param name name of the local variable
+	 * @param at   where the name is used, or null to find the first declaration of the name anywhere in the body
+	 * @return the declaration visible at the given node, or null if no local variable with the given name is visible there
+	 */
+	@Nullable
+	public Local find(String name, @Nullable Node at) {
+		val candidates = locals.get(name);
+		if (candidates == null)
+			return null;
+		if (at == null)
+			return candidates.get(0);
+
+		// walk out from the use, so the innermost declaration wins
+		Node child = at;
+		Node current = at;
+		while (current != null) {
+			val scope = scopes.get(current);
+			if (scope != null)
+				for (Local local : candidates)
+					if (local.scope == scope && scope.isBefore(local.statement, child))
+						return local;
+			if (current == body)
+				return null;
+			// the statements of a case X: entry are ordered in the scope of the switch
+			if (!isStatementGroup(current))
+				child = current;
+			current = current.getParentNode().orElse(null);
+		}
+
+		// not in this body, such as code which is being generated
+		return candidates.get(0);
+	}
+
+	/**
+	 * A scope which variables can be declared in. Variables declared in a block, switch or {@code case X ->} entry are visible to the later
+	 * statements of that block, switch or entry, in other scopes they are visible everywhere in the scope
+	 */
+	private static final class Scope {
+		final Node node;
+		@Nullable
+		private volatile Map<Node, Integer> order;
+
+		Scope(Node node) {
+			this.node = node;
+		}
+
+		boolean isBefore(@Nullable Node declaration, Node use) {
+			if (!(node instanceof NodeWithStatements<?> || node instanceof SwitchNode) || declaration == null || declaration == use)
+				return true;
+			val order = getOrder();
+			val declarationIndex = order.get(declaration);
+			val useIndex = order.get(use);
+			return declarationIndex != null && useIndex != null && declarationIndex < useIndex;
+		}
+
+		private Map<Node, Integer> getOrder() {
+			Map<Node, Integer> order = this.order;
+			if (order == null) {
+				order = new IdentityHashMap<>();
+				if (node instanceof SwitchNode) {
+					for (SwitchEntry entry : ((SwitchNode) node).getEntries())
+						if (isStatementGroup(entry))
+							for (Node statement : entry.getStatements())
+								order.put(statement, order.size());
+				} else {
+					NodeList<?> statements = ((NodeWithStatements<?>) node).getStatements();
+					for (int i = 0; i < statements.size(); i++)
+						order.put(statements.get(i), i);
+				}
+				this.order = order;
+			}
+			return order;
+		}
+	}
+
+	public static final class Local {
+		private final VariableDeclarator declarator;
+		private final Scope scope;
+		@Nullable
+		private final Node statement;
+		@Nullable
+		private volatile Type type;
+
+		Local(VariableDeclarator declarator, Scope scope, @Nullable Node statement) {
+			this.declarator = declarator;
+			this.scope = scope;
+			this.statement = statement;
+		}
+
+		public VariableDeclarator getDeclarator() {
+			return declarator;
+		}
+
+		/**
+		 * @param resolver finds the declared or inferred type of the variable, called once
+		 */
+		public Type getType(Function<VariableDeclarator, Type> resolver) {
+			Type type = this.type;
+			if (type == null)
+				this.type = type = resolver.apply(declarator);
+			return type;
+		}
+	}
+
+	/**
+	 * Removes the tables of the bodies containing any changed node
+	 */
+	private static final class Invalidator extends PropagatingAstObserver {
+		private static void invalidate(@Nullable Node node) {
+			while (node != null) {
+				if (node.containsData(KEY))
+					node.removeData(KEY);
+				node = node.getParentNode().orElse(null);
+			}
+		}
+
+		@Override
+		public void concretePropertyChange(Node observedNode, ObservableProperty property, Object oldValue, Object newValue) {
+			invalidate(observedNode);
+		}
+
+		@Override
+		public void concreteListChange(NodeList<?> observedNode, AstObserver.ListChangeType type, int index, Node nodeAddedOrRemoved) {
+			invalidate(observedNode.getParentNode().orElse(null));
+		}
+
+		@Override
+		public void concreteListReplacement(NodeList<?> observedNode, int index, Node oldValue, Node newValue) {
+			invalidate(observedNode.getParentNode().orElse(null));
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package dev.minco.javatransformer.internal.javaparser;
+
+import static com.github.javaparser.Providers.provider;
+
+import java.io.InputStream;
+import java.util.Objects;
+
+import lombok.val;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseStart;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+
+/**
+ * Parses java sources with one {@link JavaParser} for each thread, reused for every file that thread parses, all sharing one
+ * {@link ParserConfiguration}
+ * <p>
+ * The default configuration can be changed with the {@link #LANGUAGE_LEVEL_PROPERTY} and {@link #ATTRIBUTE_COMMENTS_PROPERTY} system
+ * properties, or replaced with {@link #setConfiguration(ParserConfiguration)}
+ */
+public final class Parsers {
+	/**
+	 * Name of a {@link ParserConfiguration.LanguageLevel}, defaults to the JavaParser default
+	 */
+	static final String LANGUAGE_LEVEL_PROPERTY = "JavaTransformer.javaLanguageLevel";
+	/**
+	 * Set to false to skip attributing comments to nodes, comments are then not kept in transformed sources
+	 */
+	static final String ATTRIBUTE_COMMENTS_PROPERTY = "JavaTransformer.attributeComments";
+	private static final ThreadLocal<Parser> parsers = new ThreadLocal<>();
+	private static volatile ParserConfiguration configuration = defaultConfiguration();
+
+	private Parsers() {}
+
+	static ParserConfiguration defaultConfiguration() {
+		val configuration = new ParserConfiguration();
+		val languageLevel = System.getProperty(LANGUAGE_LEVEL_PROPERTY);
+		if (languageLevel != null)
+			configuration.setLanguageLevel(ParserConfiguration.LanguageLevel.valueOf(languageLevel));
+		configuration.setAttributeComments(!"false".equals(System.getProperty(ATTRIBUTE_COMMENTS_PROPERTY)));
+		return configuration;
+	}
+
+	/**
+	 * @return the configuration shared by all threads. It must not be changed, other threads may be parsing with it and their parsers would
+	 * not be replaced. To change it, pass a new {@link ParserConfiguration} to {@link #setConfiguration(ParserConfiguration)}
+	 */
+	public static ParserConfiguration getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * Replaces the configuration used by all threads. Parsers created for the previous configuration are replaced on their next use
+	 * <p>
+	 * The given configuration is shared, not copied, so it must not be changed after this call
+	 */
+	public static void setConfiguration(ParserConfiguration configuration) {
+		Parsers.configuration = Objects.requireNonNull(configuration);
+	}
+
+	/**
+	 * @return the parsed compilation unit, read with the character encoding of the configuration
+	 * @throws ParseProblemException if the source could not be parsed
+	 */
+	public static CompilationUnit parse(InputStream is) {
+		val configuration = Parsers.configuration;
+		val result = getParser(configuration).parse(ParseStart.COMPILATION_UNIT, provider(is, configuration.getCharacterEncoding()));
+		if (!result.isSuccessful())
+			throw new ParseProblemException(result.getProblems());
+		return result.getResult().get();
+	}
+
+	/**
+	 * @return the parser of the calling thread for the current configuration
+	 */
+	static JavaParser getParser() {
+		return getParser(configuration);
+	}
+
+	private static JavaParser getParser(ParserConfiguration configuration) {
+		Parser parser = parsers.get();
+		if (parser == null || parser.configuration != configuration) {
+			parser = new Parser(configuration);
+			parsers.set(parser);
+		}
+		return parser.parser;
+	}
+
+	private static final class Parser {
+		final ParserConfiguration configuration;
+		final JavaParser parser;
+
+		Parser(ParserConfiguration configuration) {
+			this.configuration = configuration;
+			this.parser = new JavaParser(configuration);
+		}
+	}
+}
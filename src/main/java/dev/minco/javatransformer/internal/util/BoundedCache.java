@@ -0,0 +1,237 @@
+package dev.minco.javatransformer.internal.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import javax.annotation.Nullable;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Least recently used cache which evicts values once their total weight is above a limit. Evicted values are loaded again when next needed
+ * <p>
+ * Safe for concurrent use. Reads of cached values don't lock. A key which isn't cached is loaded by the first thread to ask for it, other
+ * threads asking for the same key wait for that load instead of loading it again. Loaders may look up other keys in the same cache
+ * <p>
+ * Once the total weight is above the limit the least recently used values are evicted until it is an eighth below the limit, so the
+ * values are only sorted by recency once for every eighth of the limit that is loaded
+ */
+public final class BoundedCache<K, V> {
+	private static final int LOADING = 0;
+	private static final int CACHED = 1;
+	private static final int REMOVED = 2;
+
+	private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+	private final ToLongFunction<V> weigher;
+	private final AtomicLong clock = new AtomicLong();
+	private final AtomicLong weight = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final Object evictionLock = new Object();
+	private volatile long maxWeight;
+
+	/**
+	 * @param weigher   approximate size of a value in bytes
+	 * @param maxWeight maximum total weight of cached values
+	 */
+	public BoundedCache(@NonNull ToLongFunction<V> weigher, long maxWeight) {
+		this.weigher = weigher;
+		setMaxWeight(maxWeight);
+	}
+
+	/**
+	 * Returns the cached value for the given key, or loads and caches it if it is not cached. Waits if another thread is already loading the key
+	 */
+	public V get(@NonNull K key, @NonNull Supplier<V> loader) {
+		val existing = entries.get(key);
+		if (existing != null)
+			return await(key, existing, loader);
+
+		val entry = new Entry<V>();
+		val raced = entries.putIfAbsent(key, entry);
+		if (raced != null)
+			return await(key, raced, loader);
+
+		misses.incrementAndGet();
+		V value;
+		try {
+			value = loader.get();
+		} catch (RuntimeException | Error e) {
+			remove(key, entry);
+			entry.future.completeExceptionally(e);
+			throw e;
+		}
+		entry.weight = weigher.applyAsLong(value);
+		entry.lastUsed = clock.incrementAndGet();
+		entry.future.complete(value);
+		// a concurrent clear() or eviction may have removed the entry already, then it must not be counted
+		if (entry.state.compareAndSet(LOADING, CACHED)) {
+			weight.addAndGet(entry.weight);
+			evict();
+		}
+		return value;
+	}
+
+	/**
+	 * @return the cached value for the given key, or null if it is not cached or still being loaded
+	 */
+	@Nullable
+	public V getIfPresent(@NonNull K key) {
+		val entry = entries.get(key);
+		if (entry == null || !entry.future.isDone() || entry.future.isCompletedExceptionally())
+			return null;
+		hits.incrementAndGet();
+		if (entry.lastUsed != clock.get())
+			entry.lastUsed = clock.incrementAndGet();
+		return entry.future.getNow(null);
+	}
+
+	private V await(K key, Entry<V> entry, Supplier<V> loader) {
+		val future = entry.future;
+		if (!future.isDone()) {
+			// the loader of this key needs the key itself, waiting would never finish
+			if (entry.loader == Thread.currentThread()) {
+				misses.incrementAndGet();
+				return loader.get();
+			}
+		} else if (!future.isCompletedExceptionally()) {
+			hits.incrementAndGet();
+			// only write the shared clock if another value was used since this one
+			if (entry.lastUsed != clock.get())
+				entry.lastUsed = clock.incrementAndGet();
+			return future.getNow(null);
+		}
+
+		try {
+			val value = future.get();
+			hits.incrementAndGet();
+			return value;
+		} catch (ExecutionException e) {
+			// a failed load is not a hit, the next caller loads the key again
+			remove(key, entry);
+			throw rethrow(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CompletionException(e);
+		}
+	}
+
+	private static RuntimeException rethrow(Throwable t) {
+		if (t instanceof RuntimeException)
+			throw (RuntimeException) t;
+		if (t instanceof Error)
+			throw (Error) t;
+		throw new CompletionException(t);
+	}
+
+	private boolean remove(K key, Entry<V> entry) {
+		if (!entries.remove(key, entry))
+			return false;
+		if (entry.state.getAndSet(REMOVED) == CACHED)
+			weight.addAndGet(-entry.weight);
+		return true;
+	}
+
+	private void evict() {
+		if (weight.get() <= maxWeight)
+			return;
+		synchronized (evictionLock) {
+			long max = maxWeight;
+			if (weight.get() <= max)
+				return;
+			long target = max - max / 8;
+
+			List<Map.Entry<K, Entry<V>>> candidates = new ArrayList<>();
+			for (Map.Entry<K, Entry<V>> candidate : entries.entrySet())
+				if (candidate.getValue().state.get() == CACHED)
+					candidates.add(candidate);
+			candidates.sort(Comparator.comparingLong(it -> it.getValue().lastUsed));
+
+			// always keep the most recently used value, even if it's heavier than the limit
+			for (int i = 0; i < candidates.size() - 1 && weight.get() > target; i++) {
+				val eldest = candidates.get(i);
+				if (remove(eldest.getKey(), eldest.getValue()))
+					evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Removes the value for the given key, if it is cached
+	 */
+	public void remove(@NonNull K key) {
+		val entry = entries.get(key);
+		if (entry != null)
+			remove(key, entry);
+	}
+
+	public void clear() {
+		for (Map.Entry<K, Entry<V>> entry : entries.entrySet())
+			remove(entry.getKey(), entry.getValue());
+	}
+
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * Changes the maximum total weight, evicting values straight away if the cache is now too large
+	 */
+	public void setMaxWeight(long maxWeight) {
+		if (maxWeight < 1)
+			throw new IllegalArgumentException("maxWeight must be at least 1, got " + maxWeight);
+		this.maxWeight = maxWeight;
+		evict();
+	}
+
+	/**
+	 * @return total weight of the cached values
+	 */
+	public long getWeight() {
+		return weight.get();
+	}
+
+	/**
+	 * @return number of cached values, including values which are being loaded
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return "BoundedCache{size=" + size() + ", weight=" + getWeight() + ", maxWeight=" + getMaxWeight() + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + '}';
+	}
+
+	private static final class Entry<V> {
+		final CompletableFuture<V> future = new CompletableFuture<>();
+		final Thread loader = Thread.currentThread();
+		final AtomicInteger state = new AtomicInteger(LOADING);
+		volatile long lastUsed;
+		volatile long weight;
+	}
+}
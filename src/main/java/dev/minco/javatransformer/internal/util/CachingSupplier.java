@@ -9,12 +9,15 @@ import lombok.ToString;
 
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * Calls the wrapped supplier once, on first use, and returns the same value after that. Safe for concurrent use
+ */
 @EqualsAndHashCode
 @ToString
 public final class CachingSupplier<T> implements Supplier<T> {
 	@NonNull
 	private final Supplier<T> wrapped;
-	private transient T value;
+	private transient volatile T value;
 
 	private CachingSupplier(@NonNull Supplier<T> wrapped) {
 		this.wrapped = wrapped;
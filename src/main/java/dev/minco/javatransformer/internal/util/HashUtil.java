@@ -0,0 +1,27 @@
+package dev.minco.javatransformer.internal.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import dev.minco.javatransformer.api.TransformationException;
+
+public final class HashUtil {
+	public static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new TransformationException(e);
+		}
+	}
+
+	public static String sha256Hex(byte[] data) {
+		return toHex(sha256().digest(data));
+	}
+
+	public static String toHex(byte[] bytes) {
+		StringBuilder result = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		return result.toString();
+	}
+}
@@ -0,0 +1,88 @@
+package dev.minco.javatransformer.internal.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Runs tasks on an {@link Executor} and hands their results to a consumer in the order the tasks were submitted
+ * <p>
+ * At most {@code window} tasks are in flight at once. If no executor is given tasks run directly on the submitting thread.
+ * The consumer is always called on the submitting thread. Callers must call {@link #cancel()} in a finally block after {@link #finish()},
+ * so no task is still running once the resources the tasks use are closed.
+ */
+public final class OrderedPipeline<T> {
+	@Nullable
+	private final Executor executor;
+	private final int window;
+	private final Consumer<T> consumer;
+	private final ArrayDeque<CompletableFuture<T>> inFlight = new ArrayDeque<>();
+	private volatile boolean cancelled;
+
+	public OrderedPipeline(@Nullable Executor executor, int window, Consumer<T> consumer) {
+		if (window < 1)
+			throw new IllegalArgumentException("window must be at least 1, got " + window);
+		this.executor = executor;
+		this.window = window;
+		this.consumer = consumer;
+	}
+
+	public void submit(Supplier<T> task) {
+		if (executor == null) {
+			consumer.accept(task.get());
+			return;
+		}
+
+		CompletableFuture<T> head;
+		while ((head = inFlight.peekFirst()) != null && (inFlight.size() >= window || head.isDone()))
+			consumer.accept(join(inFlight.removeFirst()));
+
+		inFlight.addLast(CompletableFuture.supplyAsync(() -> cancelled ? null : task.get(), executor));
+	}
+
+	/**
+	 * Waits for all submitted tasks and passes their results to the consumer
+	 */
+	public void finish() {
+		while (!inFlight.isEmpty())
+			consumer.accept(join(inFlight.removeFirst()));
+	}
+
+	/**
+	 * Discards the results of all tasks which have not been passed to the consumer yet, skipping tasks which have not started, and waits
+	 * for running tasks to end. Does nothing after {@link #finish()} returns normally
+	 */
+	public void cancel() {
+		if (inFlight.isEmpty())
+			return;
+		cancelled = true;
+		for (CompletableFuture<T> future : inFlight) {
+			try {
+				future.join();
+			} catch (CompletionException | CancellationException ignored) {
+				// results are discarded
+			}
+		}
+		inFlight.clear();
+	}
+
+	private T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			cancel();
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw e;
+		}
+	}
+}
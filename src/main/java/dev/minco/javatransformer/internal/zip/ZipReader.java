@@ -0,0 +1,589 @@
+package dev.minco.javatransformer.internal.zip;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads entries of a zip file using its central directory
+ * <p>
+ * Unlike {@link java.util.zip.ZipInputStream} entries can be read in any order and from multiple threads at once,
+ * and the compressed bytes of an entry can be read without inflating them so they can be copied to another archive with {@link ZipWriter#copyRaw(ZipReader, Entry)}
+ * <p>
+ * The archive is memory mapped, so no file handle is held open while reading. Readers are shared: {@link #open(Path)} returns the
+ * already open reader for an unchanged file and increments its reference count, and {@link #close()} unmaps the file once every user has
+ * closed it, so it can be replaced or deleted straight away. Reads which are still running when the last user closes the reader finish first.
+ */
+public final class ZipReader implements Closeable {
+	static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	static final int END_SIGNATURE = 0x06054b50;
+	static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	static final int ZIP64_EXTRA_ID = 0x0001;
+	static final int LOCAL_HEADER_SIZE = 30;
+	static final int CENTRAL_HEADER_SIZE = 46;
+	static final int END_SIZE = 22;
+	static final int STORED = 0;
+	static final int DEFLATED = 8;
+	private static final byte[] EMPTY = new byte[0];
+
+	private static final Map<Path, ZipReader> openReaders = new HashMap<>();
+	/**
+	 * {@code sun.misc.Unsafe.invokeCleaner(ByteBuffer)} bound to the unsafe instance, or null if it is not available
+	 */
+	@Nullable
+	private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+	private final Path path;
+	private final long size;
+	private final FileTime lastModified;
+	private final List<Entry> entries;
+	private final Map<String, Entry> entriesByName;
+	/**
+	 * Only used for archives which are too large to map into a single buffer
+	 */
+	@Nullable
+	private final FileChannel channel;
+	@Nullable
+	private volatile ByteBuffer mapped;
+	private int references = 1;
+	/**
+	 * Held for reading while the mapping is used, and for writing while it is unmapped
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private ZipReader(Path path, long size, FileTime lastModified) throws IOException {
+		this.path = path;
+		this.size = size;
+		this.lastModified = lastModified;
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			if (size <= Integer.MAX_VALUE) {
+				// mapping stays valid after the channel is closed
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+				channel.close();
+				channel = null;
+			}
+			this.channel = channel;
+			this.entries = Collections.unmodifiableList(readCentralDirectory());
+		} catch (IOException | RuntimeException e) {
+			if (channel != null)
+				channel.close();
+			if (mapped != null)
+				unmap(mapped);
+			throw e;
+		}
+		this.entriesByName = new HashMap<>(entries.size() * 2);
+		for (Entry entry : entries)
+			entriesByName.putIfAbsent(entry.name, entry);
+	}
+
+	/**
+	 * Opens a reader for the given archive, or shares an already open reader if the file has not changed since it was opened
+	 * <p>
+	 * Each call must be matched by a call to {@link #close()}
+	 */
+	public static ZipReader open(Path path) throws IOException {
+		path = path.toAbsolutePath().normalize();
+		long size = Files.size(path);
+		FileTime lastModified = Files.getLastModifiedTime(path);
+
+		synchronized (openReaders) {
+			ZipReader existing = openReaders.get(path);
+			if (existing != null && existing.isSameFile(size, lastModified)) {
+				existing.references++;
+				return existing;
+			}
+		}
+
+		ZipReader reader = new ZipReader(path, size, lastModified);
+		synchronized (openReaders) {
+			ZipReader existing = openReaders.get(path);
+			if (existing != null && existing.isSameFile(size, lastModified)) {
+				existing.references++;
+				reader.release();
+				return existing;
+			}
+			openReaders.put(path, reader);
+			return reader;
+		}
+	}
+
+	@Nullable
+	private static MethodHandle findInvokeCleaner() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			return MethodHandles.lookup().findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class)).bindTo(field.get(null));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Opens a reader for the given archive which is not shared with any other caller, so the file is unmapped as soon as it is closed
+	 * <p>
+	 * Used before replacing the archive
+	 */
+	public static ZipReader openUnshared(Path path) throws IOException {
+		path = path.toAbsolutePath().normalize();
+		// never added to openReaders, so close() releases it straight away
+		return new ZipReader(path, Files.size(path), Files.getLastModifiedTime(path));
+	}
+
+	private boolean isSameFile(long size, FileTime lastModified) {
+		return this.size == size && this.lastModified.equals(lastModified);
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return size of the archive, read before it was mapped
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return last modified time of the archive, read before it was mapped
+	 */
+	public FileTime getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @return entries in central directory order
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	@Nullable
+	public Entry getEntry(String name) {
+		return entriesByName.get(name);
+	}
+
+	/**
+	 * @return the uncompressed contents of the given entry
+	 */
+	public byte[] read(Entry entry) throws IOException {
+		byte[] raw = readRaw(entry);
+		switch (entry.method) {
+			case STORED:
+				return raw;
+			case DEFLATED:
+				return inflate(entry, raw);
+			default:
+				throw new ZipException("Unsupported compression method " + entry.method + " for " + entry.name + " in " + path);
+		}
+	}
+
+	/**
+	 * @return the compressed contents of the given entry, exactly as stored in the archive
+	 */
+	public byte[] readRaw(Entry entry) throws IOException {
+		if (entry.compressedSize > Integer.MAX_VALUE)
+			throw new ZipException("Entry " + entry.name + " in " + path + " is too large to read into memory");
+
+		lock.readLock().lock();
+		try {
+			ByteBuffer header = readLocalHeader(entry);
+			long dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE + unsignedShort(header, 26) + unsignedShort(header, 28);
+
+			ByteBuffer data = read(dataOffset, (int) entry.compressedSize);
+			byte[] result = new byte[data.remaining()];
+			data.get(result);
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the extra fields of the local header of the given entry, without the zip64 field
+	 */
+	byte[] readLocalExtra(Entry entry) throws IOException {
+		lock.readLock().lock();
+		try {
+			ByteBuffer header = readLocalHeader(entry);
+			int extraLength = unsignedShort(header, 28);
+			if (extraLength == 0)
+				return EMPTY;
+			return withoutZip64(read(entry.localHeaderOffset + LOCAL_HEADER_SIZE + unsignedShort(header, 26), extraLength), 0, extraLength);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private ByteBuffer readLocalHeader(Entry entry) throws IOException {
+		ByteBuffer header = read(entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+		if (header.getInt(0) != LOCAL_HEADER_SIGNATURE)
+			throw new ZipException("Invalid local header for " + entry.name + " in " + path);
+		return header;
+	}
+
+	private byte[] inflate(Entry entry, byte[] raw) throws IOException {
+		if (entry.size > Integer.MAX_VALUE)
+			throw new ZipException("Entry " + entry.name + " in " + path + " is too large to read into memory");
+
+		byte[] result = new byte[(int) entry.size];
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(raw);
+			int position = 0;
+			while (!inflater.finished() && position < result.length) {
+				int read = inflater.inflate(result, position, result.length - position);
+				if (read == 0) {
+					if (inflater.needsInput()) {
+						// nowrap inflater may need a dummy byte after the end of the deflated data
+						inflater.setInput(new byte[1]);
+					} else if (inflater.needsDictionary()) {
+						throw new ZipException("Entry " + entry.name + " in " + path + " requires a preset dictionary");
+					}
+				}
+				position += read;
+			}
+			if (position != result.length)
+				throw new ZipException("Entry " + entry.name + " in " + path + " inflated to " + position + " bytes, expected " + result.length);
+		} catch (DataFormatException e) {
+			throw new ZipException("Invalid deflate data for " + entry.name + " in " + path + ": " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+		return result;
+	}
+
+	private List<Entry> readCentralDirectory() throws IOException {
+		long fileSize = size;
+		int searchSize = (int) Math.min(fileSize, END_SIZE + 0xFFFF);
+		ByteBuffer tail = read(fileSize - searchSize, searchSize);
+
+		int end = -1;
+		for (int i = searchSize - END_SIZE; i >= 0; i--) {
+			if (tail.getInt(i) == END_SIGNATURE) {
+				end = i;
+				break;
+			}
+		}
+		if (end == -1)
+			throw new ZipException("Missing end of central directory in " + path);
+
+		long entryCount = unsignedShort(tail, end + 10);
+		long directorySize = unsignedInt(tail, end + 12);
+		long directoryOffset = unsignedInt(tail, end + 16);
+
+		long locatorOffset = fileSize - searchSize + end - 20;
+		if (locatorOffset >= 0 && (entryCount == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL)) {
+			ByteBuffer locator = read(locatorOffset, 20);
+			if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+				ByteBuffer zip64End = read(locator.getLong(8), 56);
+				if (zip64End.getInt(0) != ZIP64_END_SIGNATURE)
+					throw new ZipException("Invalid zip64 end of central directory in " + path);
+				entryCount = zip64End.getLong(32);
+				directorySize = zip64End.getLong(40);
+				directoryOffset = zip64End.getLong(48);
+			}
+		}
+
+		if (directorySize > Integer.MAX_VALUE)
+			throw new ZipException("Central directory of " + path + " is too large");
+
+		ByteBuffer directory = read(directoryOffset, (int) directorySize);
+		List<Entry> result = new ArrayList<>((int) Math.min(entryCount, 0xFFFF));
+		int position = 0;
+		for (long i = 0; i < entryCount; i++) {
+			if (directory.getInt(position) != CENTRAL_HEADER_SIGNATURE)
+				throw new ZipException("Invalid central directory header in " + path);
+
+			int versionMadeBy = unsignedShort(directory, position + 4);
+			int flags = unsignedShort(directory, position + 8);
+			int method = unsignedShort(directory, position + 10);
+			int dosTime = directory.getInt(position + 12);
+			int crc = directory.getInt(position + 16);
+			long compressedSize = unsignedInt(directory, position + 20);
+			long size = unsignedInt(directory, position + 24);
+			int nameLength = unsignedShort(directory, position + 28);
+			int extraLength = unsignedShort(directory, position + 30);
+			int commentLength = unsignedShort(directory, position + 32);
+			int internalAttributes = unsignedShort(directory, position + 36);
+			int externalAttributes = directory.getInt(position + 38);
+			long localHeaderOffset = unsignedInt(directory, position + 42);
+
+			byte[] nameBytes = new byte[nameLength];
+			directory.position(position + CENTRAL_HEADER_SIZE);
+			directory.get(nameBytes);
+			String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+			int extra = position + CENTRAL_HEADER_SIZE + nameLength;
+			int extraEnd = extra + extraLength;
+			while (extra + 4 <= extraEnd) {
+				int id = unsignedShort(directory, extra);
+				int length = unsignedShort(directory, extra + 2);
+				if (id == ZIP64_EXTRA_ID) {
+					int field = extra + 4;
+					if (size == 0xFFFFFFFFL) {
+						size = directory.getLong(field);
+						field += 8;
+					}
+					if (compressedSize == 0xFFFFFFFFL) {
+						compressedSize = directory.getLong(field);
+						field += 8;
+					}
+					if (localHeaderOffset == 0xFFFFFFFFL) {
+						localHeaderOffset = directory.getLong(field);
+					}
+				}
+				extra += 4 + length;
+			}
+
+			byte[] comment = EMPTY;
+			if (commentLength != 0) {
+				comment = new byte[commentLength];
+				directory.position(extraEnd);
+				directory.get(comment);
+			}
+
+			byte[] extraFields = withoutZip64(directory, position + CENTRAL_HEADER_SIZE + nameLength, extraLength);
+			result.add(new Entry(name, versionMadeBy, flags, method, dosTime, crc, compressedSize, size, localHeaderOffset, internalAttributes, externalAttributes, extraFields, comment));
+			position = extraEnd + commentLength;
+		}
+		return result;
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException {
+		if (position < 0 || position + length > size)
+			throw new EOFException("Unexpected end of " + path);
+
+		ByteBuffer mapped = this.mapped;
+		if (mapped != null) {
+			ByteBuffer buffer = mapped.duplicate();
+			buffer.position((int) position);
+			buffer.limit((int) position + length);
+			return buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		FileChannel channel = this.channel;
+		if (channel == null || !channel.isOpen())
+			throw new IOException(path + " has been closed");
+
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0)
+				throw new EOFException("Unexpected end of " + path);
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Copies the given extra fields except the zip64 field, which {@link ZipWriter} writes itself when needed
+	 */
+	private static byte[] withoutZip64(ByteBuffer buffer, int offset, int length) {
+		if (length == 0)
+			return EMPTY;
+		ByteBuffer result = ByteBuffer.allocate(length);
+		int end = offset + length;
+		while (offset + 4 <= end) {
+			int fieldLength = 4 + unsignedShort(buffer, offset + 2);
+			if (offset + fieldLength > end)
+				break;
+			if (unsignedShort(buffer, offset) != ZIP64_EXTRA_ID)
+				for (int i = 0; i < fieldLength; i++)
+					result.put(buffer.get(offset + i));
+			offset += fieldLength;
+		}
+		if (result.position() == 0)
+			return EMPTY;
+		byte[] copy = new byte[result.position()];
+		result.flip();
+		result.get(copy);
+		return copy;
+	}
+
+	private static int unsignedShort(ByteBuffer buffer, int index) {
+		return buffer.getShort(index) & 0xFFFF;
+	}
+
+	private static long unsignedInt(ByteBuffer buffer, int index) {
+		return buffer.getInt(index) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Releases this reference to the archive. The file is unmapped once all references have been closed
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (openReaders) {
+			if (references == 0)
+				return;
+			if (--references != 0)
+				return;
+			openReaders.remove(path, this);
+		}
+		release();
+	}
+
+	private void release() throws IOException {
+		lock.writeLock().lock();
+		try {
+			ByteBuffer mapped = this.mapped;
+			this.mapped = null;
+			if (mapped != null)
+				unmap(mapped);
+			if (channel != null)
+				channel.close();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Unmaps the given buffer now instead of when it is garbage collected, which can be much later. Mapped files can't be replaced or deleted
+	 * on Windows. If the JVM does not allow this the mapping is left to the garbage collector
+	 */
+	private static void unmap(ByteBuffer buffer) {
+		if (INVOKE_CLEANER == null || !buffer.isDirect())
+			return;
+		try {
+			INVOKE_CLEANER.invoke(buffer);
+		} catch (Throwable t) {
+			// left to the garbage collector
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ZipReader{" + path + ", entries.size()=" + entries.size() + '}';
+	}
+
+	public static final class Entry {
+		private final String name;
+		private final int versionMadeBy;
+		private final int flags;
+		private final int method;
+		private final int dosTime;
+		private final int crc;
+		private final long compressedSize;
+		private final long size;
+		private final long localHeaderOffset;
+		private final int internalAttributes;
+		private final int externalAttributes;
+		private final byte[] extra;
+		private final byte[] comment;
+
+		Entry(String name, int versionMadeBy, int flags, int method, int dosTime, int crc, long compressedSize, long size, long localHeaderOffset, int internalAttributes, int externalAttributes, byte[] extra, byte[] comment) {
+			this.name = name;
+			this.versionMadeBy = versionMadeBy;
+			this.flags = flags;
+			this.method = method;
+			this.dosTime = dosTime;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.localHeaderOffset = localHeaderOffset;
+			this.internalAttributes = internalAttributes;
+			this.externalAttributes = externalAttributes;
+			this.extra = extra;
+			this.comment = comment;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the host system and zip version which wrote the entry, the host determines how {@link #getExternalAttributes()} is read
+		 */
+		public int getVersionMadeBy() {
+			return versionMadeBy;
+		}
+
+		public int getFlags() {
+			return flags;
+		}
+
+		public int getMethod() {
+			return method;
+		}
+
+		public int getDosTime() {
+			return dosTime;
+		}
+
+		public int getCrc() {
+			return crc;
+		}
+
+		public long getCompressedSize() {
+			return compressedSize;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getLocalHeaderOffset() {
+			return localHeaderOffset;
+		}
+
+		public int getInternalAttributes() {
+			return internalAttributes;
+		}
+
+		/**
+		 * @return host specific attributes, such as unix permissions
+		 */
+		public int getExternalAttributes() {
+			return externalAttributes;
+		}
+
+		/**
+		 * @return extra fields of the central directory header, such as extended timestamps, without the zip64 field
+		 */
+		byte[] getExtra() {
+			return extra;
+		}
+
+		byte[] getComment() {
+			return comment;
+		}
+
+		public boolean isDirectory() {
+			return name.endsWith("/");
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package dev.minco.javatransformer.internal.zip;
+
+import static dev.minco.javatransformer.internal.zip.ZipReader.CENTRAL_HEADER_SIGNATURE;
+import static dev.minco.javatransformer.internal.zip.ZipReader.DEFLATED;
+import static dev.minco.javatransformer.internal.zip.ZipReader.END_SIGNATURE;
+import static dev.minco.javatransformer.internal.zip.ZipReader.LOCAL_HEADER_SIGNATURE;
+import static dev.minco.javatransformer.internal.zip.ZipReader.STORED;
+import static dev.minco.javatransformer.internal.zip.ZipReader.ZIP64_END_SIGNATURE;
+import static dev.minco.javatransformer.internal.zip.ZipReader.ZIP64_EXTRA_ID;
+import static dev.minco.javatransformer.internal.zip.ZipReader.ZIP64_LOCATOR_SIGNATURE;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a zip file, either from uncompressed data or by copying already compressed entries from a {@link ZipReader}
+ */
+public final class ZipWriter implements Closeable {
+	private static final int VERSION = 20;
+	private static final int VERSION_ZIP64 = 45;
+	private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+	private static final int FLAG_UTF8 = 0x0800;
+	private static final byte[] EMPTY = new byte[0];
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+	private final OutputStream out;
+	private final List<WrittenEntry> written = new ArrayList<>();
+	private final Set<String> names = new HashSet<>();
+	private final byte[] scratch = new byte[8];
+	private long position;
+	private boolean closed;
+
+	public ZipWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	public static ZipWriter create(Path path) throws IOException {
+		return new ZipWriter(new BufferedOutputStream(Files.newOutputStream(path)));
+	}
+
+	/**
+	 * Compresses and writes a new entry
+	 */
+	public void write(String name, byte[] data) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+
+		int method;
+		byte[] compressed;
+		if (data.length == 0) {
+			method = STORED;
+			compressed = data;
+		} else {
+			method = DEFLATED;
+			compressed = deflate(data);
+		}
+
+		WrittenEntry entry = new WrittenEntry(name, VERSION, FLAG_UTF8, method, dosTime(System.currentTimeMillis()), (int) crc.getValue(), compressed.length, data.length, 0, 0, EMPTY, EMPTY);
+		writeEntry(entry, EMPTY, compressed);
+	}
+
+	/**
+	 * Copies an entry from another archive without inflating and deflating it again
+	 * <p>
+	 * The flags, attributes, extra fields and comment of the entry are kept, so unix permissions and extended timestamps survive the copy.
+	 * Sizes are always written in the local header, so the copy never has a data descriptor
+	 */
+	public void copyRaw(ZipReader reader, ZipReader.Entry entry) throws IOException {
+		int flags = entry.getFlags() & ~FLAG_DATA_DESCRIPTOR;
+		// names are always written as UTF-8
+		if (!isAscii(entry.getName()))
+			flags |= FLAG_UTF8;
+		WrittenEntry written = new WrittenEntry(entry.getName(), entry.getVersionMadeBy(), flags, entry.getMethod(), entry.getDosTime(), entry.getCrc(), entry.getCompressedSize(), entry.getSize(),
+			entry.getInternalAttributes(), entry.getExternalAttributes(), entry.getExtra(), entry.getComment());
+		writeEntry(written, reader.readLocalExtra(entry), reader.readRaw(entry));
+	}
+
+	private void writeEntry(WrittenEntry entry, byte[] localExtra, byte[] compressed) throws IOException {
+		if (!names.add(entry.nameString))
+			throw new ZipException("duplicate entry: " + entry.nameString);
+
+		byte[] nameBytes = entry.name;
+		long size = entry.size;
+		long compressedSize = entry.compressedSize;
+		boolean zip64Sizes = size >= ZIP64_MAGIC || compressedSize >= ZIP64_MAGIC;
+		entry.offset = position;
+
+		writeInt(LOCAL_HEADER_SIGNATURE);
+		writeShort(zip64Sizes ? VERSION_ZIP64 : VERSION);
+		writeShort(entry.flags);
+		writeShort(entry.method);
+		writeInt(entry.dosTime);
+		writeInt(entry.crc);
+		writeInt(zip64Sizes ? ZIP64_MAGIC : compressedSize);
+		writeInt(zip64Sizes ? ZIP64_MAGIC : size);
+		writeShort(nameBytes.length);
+		writeShort((zip64Sizes ? 20 : 0) + localExtra.length);
+		writeBytes(nameBytes);
+		if (zip64Sizes) {
+			writeShort(ZIP64_EXTRA_ID);
+			writeShort(16);
+			writeLong(size);
+			writeLong(compressedSize);
+		}
+		writeBytes(localExtra);
+		writeBytes(compressed);
+
+		written.add(entry);
+	}
+
+	private static boolean isAscii(String name) {
+		for (int i = 0; i < name.length(); i++)
+			if (name.charAt(i) >= 0x80)
+				return false;
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+
+		try {
+			long directoryOffset = position;
+			for (WrittenEntry entry : written)
+				writeCentralHeader(entry);
+			long directorySize = position - directoryOffset;
+
+			int count = written.size();
+			if (count >= 0xFFFF || directoryOffset >= ZIP64_MAGIC || directorySize >= ZIP64_MAGIC) {
+				long zip64EndOffset = position;
+				writeInt(ZIP64_END_SIGNATURE);
+				writeLong(44);
+				writeShort(VERSION_ZIP64);
+				writeShort(VERSION_ZIP64);
+				writeInt(0);
+				writeInt(0);
+				writeLong(count);
+				writeLong(count);
+				writeLong(directorySize);
+				writeLong(directoryOffset);
+
+				writeInt(ZIP64_LOCATOR_SIGNATURE);
+				writeInt(0);
+				writeLong(zip64EndOffset);
+				writeInt(1);
+			}
+
+			writeInt(END_SIGNATURE);
+			writeShort(0);
+			writeShort(0);
+			writeShort(Math.min(count, 0xFFFF));
+			writeShort(Math.min(count, 0xFFFF));
+			writeInt(Math.min(directorySize, ZIP64_MAGIC));
+			writeInt(Math.min(directoryOffset, ZIP64_MAGIC));
+			writeShort(0);
+		} finally {
+			out.close();
+		}
+	}
+
+	private void writeCentralHeader(WrittenEntry entry) throws IOException {
+		int extraLength = 0;
+		if (entry.size >= ZIP64_MAGIC)
+			extraLength += 8;
+		if (entry.compressedSize >= ZIP64_MAGIC)
+			extraLength += 8;
+		if (entry.offset >= ZIP64_MAGIC)
+			extraLength += 8;
+
+		writeInt(CENTRAL_HEADER_SIGNATURE);
+		writeShort(entry.versionMadeBy);
+		writeShort(extraLength == 0 ? VERSION : VERSION_ZIP64);
+		writeShort(entry.flags);
+		writeShort(entry.method);
+		writeInt(entry.dosTime);
+		writeInt(entry.crc);
+		writeInt(Math.min(entry.compressedSize, ZIP64_MAGIC));
+		writeInt(Math.min(entry.size, ZIP64_MAGIC));
+		writeShort(entry.name.length);
+		writeShort((extraLength == 0 ? 0 : extraLength + 4) + entry.extra.length);
+		writeShort(entry.comment.length);
+		writeShort(0);
+		writeShort(entry.internalAttributes);
+		writeInt(entry.externalAttributes);
+		writeInt(Math.min(entry.offset, ZIP64_MAGIC));
+		writeBytes(entry.name);
+		if (extraLength != 0) {
+			writeShort(ZIP64_EXTRA_ID);
+			writeShort(extraLength);
+			if (entry.size >= ZIP64_MAGIC)
+				writeLong(entry.size);
+			if (entry.compressedSize >= ZIP64_MAGIC)
+				writeLong(entry.compressedSize);
+			if (entry.offset >= ZIP64_MAGIC)
+				writeLong(entry.offset);
+		}
+		writeBytes(entry.extra);
+		writeBytes(entry.comment);
+	}
+
+	private static byte[] deflate(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream result = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				int length = deflater.deflate(buffer);
+				result.write(buffer, 0, length);
+			}
+			return result.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static int dosTime(long time) {
+		LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+		if (date.getYear() < 1980)
+			return (1 << 21) | (1 << 16);
+		return (date.getYear() - 1980) << 25 | date.getMonthValue() << 21 | date.getDayOfMonth() << 16 |
+			date.getHour() << 11 | date.getMinute() << 5 | date.getSecond() >> 1;
+	}
+
+	private void writeShort(int value) throws IOException {
+		scratch[0] = (byte) value;
+		scratch[1] = (byte) (value >>> 8);
+		out.write(scratch, 0, 2);
+		position += 2;
+	}
+
+	private void writeInt(long value) throws IOException {
+		scratch[0] = (byte) value;
+		scratch[1] = (byte) (value >>> 8);
+		scratch[2] = (byte) (value >>> 16);
+		scratch[3] = (byte) (value >>> 24);
+		out.write(scratch, 0, 4);
+		position += 4;
+	}
+
+	private void writeLong(long value) throws IOException {
+		writeInt(value);
+		writeInt(value >>> 32);
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException {
+		out.write(bytes);
+		position += bytes.length;
+	}
+
+	private static final class WrittenEntry {
+		final String nameString;
+		final byte[] name;
+		final int versionMadeBy;
+		final int flags;
+		final int method;
+		final int dosTime;
+		final int crc;
+		final long compressedSize;
+		final long size;
+		final int internalAttributes;
+		final int externalAttributes;
+		final byte[] extra;
+		final byte[] comment;
+		long offset;
+
+		WrittenEntry(String name, int versionMadeBy, int flags, int method, int dosTime, int crc, long compressedSize, long size, int internalAttributes, int externalAttributes, byte[] extra, byte[] comment) {
+			this.nameString = name;
+			this.name = name.getBytes(StandardCharsets.UTF_8);
+			this.versionMadeBy = versionMadeBy;
+			this.flags = flags;
+			this.method = method;
+			this.dosTime = dosTime;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.internalAttributes = internalAttributes;
+			this.externalAttributes = externalAttributes;
+			this.extra = extra;
+			this.comment = comment;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package dev.minco.javatransformer.api;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+public class ClassFilterTest {
+	private static final String API = "dev.minco.javatransformer.api";
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testMatchesName() {
+		Assert.assertEquals(Boolean.TRUE, ClassFilter.named("a.**.C").matchesName("a.b.c.C"));
+		Assert.assertEquals(Boolean.FALSE, ClassFilter.named("a.*.C").matchesName("a.b.c.C"));
+		Assert.assertEquals(Boolean.TRUE, ClassFilter.named("a.?.C").matchesName("a.b.C"));
+		Assert.assertEquals(Collections.singletonList("a.b"), ClassFilter.named("a.b.*Test").getPackages());
+		Assert.assertNull(ClassFilter.named("*.Test").getPackages());
+
+		Assert.assertEquals(Boolean.TRUE, ClassFilter.inPackage("a.b").matchesName("a.b.c.C"));
+		Assert.assertEquals(Boolean.FALSE, ClassFilter.inPackage("a.b").matchesName("a.bc.C"));
+		Assert.assertEquals(Boolean.TRUE, ClassFilter.matching(Pattern.compile("a\\.b\\..*")).matchesName("a.b.C"));
+
+		Assert.assertNull(ClassFilter.annotatedWith("a.A").matchesName("a.b.C"));
+		Assert.assertEquals(Boolean.FALSE, ClassFilter.inPackage("x").and(ClassFilter.annotatedWith("a.A")).matchesName("a.b.C"));
+		Assert.assertNull(ClassFilter.inPackage("a").and(ClassFilter.annotatedWith("a.A")).matchesName("a.b.C"));
+		Assert.assertEquals(Boolean.TRUE, ClassFilter.inPackage("a").or(ClassFilter.annotatedWith("a.A")).matchesName("a.b.C"));
+	}
+
+	@Test
+	public void testEquality() {
+		Assert.assertEquals(ClassFilter.inPackage("a"), ClassFilter.inPackage("a"));
+		Assert.assertNotEquals(ClassFilter.inPackage("a"), ClassFilter.inPackage("b"));
+		Assert.assertEquals(ClassFilter.named("a.*Test"), ClassFilter.named("a.*Test"));
+		Assert.assertEquals(ClassFilter.named("a.*Test").hashCode(), ClassFilter.named("a.*Test").hashCode());
+		Assert.assertEquals(ClassFilter.inPackage("a").and(ClassFilter.annotatedWith("a.A")), ClassFilter.inPackage("a").and(ClassFilter.annotatedWith("a.A")));
+		Assert.assertNotEquals(ClassFilter.inPackage("a").and(ClassFilter.annotatedWith("a.A")), ClassFilter.inPackage("a").or(ClassFilter.annotatedWith("a.A")));
+
+		JavaTransformer transformer = new JavaTransformer();
+		Transformer noop = c -> {};
+		transformer.addTransformer(ClassFilter.inPackage("a"), noop);
+		try {
+			transformer.addTransformer(ClassFilter.inPackage("a"), noop);
+			Assert.fail("Adding the same transformer with an equal filter should fail");
+		} catch (IllegalArgumentException ignored) {
+		}
+	}
+
+	@Test
+	public void testFilteredTransformers() {
+		Path classes = JavaTransformer.pathFromClass(ClassFilterTest.class);
+		Set<String> annotated = new TreeSet<>();
+		Set<String> enums = new TreeSet<>();
+		Set<String> tests = new TreeSet<>();
+		Set<String> transformPackage = new TreeSet<>();
+
+		JavaTransformer transformer = new JavaTransformer();
+		transformer.getClassPath().addPath(classes);
+		transformer.addTransformer(ClassFilter.annotatedWith("org.junit.runner.RunWith"), c -> annotated.add(c.getName()));
+		transformer.addTransformer(ClassFilter.extendsOrImplements("java.lang.Enum"), c -> enums.add(c.getName()));
+		transformer.addTransformer(ClassFilter.named(API + ".*Test"), c -> tests.add(c.getName()));
+		transformer.addTransformer(ClassFilter.inPackage("dev.minco.javatransformer.transform"), c -> transformPackage.add(c.getName()));
+		transformer.parse(classes);
+
+		Assert.assertEquals(Collections.singleton(API + ".JavaTransformerTest"), annotated);
+		Assert.assertTrue(enums.contains(API + ".TestEnum"));
+		Assert.assertTrue(tests.contains(API + ".ClassFilterTest"));
+		Assert.assertFalse(tests.contains(API + ".TestEnum"));
+		Assert.assertFalse(transformPackage.isEmpty());
+		for (String name : transformPackage)
+			Assert.assertTrue(name, name.startsWith("dev.minco.javatransformer.transform."));
+	}
+
+	@Test
+	public void testSubtypeWithMissingUnrelatedAncestor() throws Exception {
+		Path classes = folder.newFolder("classes").toPath();
+		writeClass(classes, "org/example/Target", Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, "java/lang/Object");
+		writeClass(classes, "org/example/Base", Opcodes.ACC_PUBLIC, "java/lang/Object", "org/example/Missing", "org/example/Target");
+
+		ClassPath classPath = ClassPath.of(classes);
+		ClassHeader header = new ClassHeader("org.example.Child", "org.example.Base", Collections.emptyList(), Collections.emptyList(), classPath);
+		Assert.assertTrue("A missing ancestor should not hide supertypes in other branches", header.isSubtypeOf("org.example.Target"));
+		Assert.assertFalse(header.isSubtypeOf("org.example.Unrelated"));
+	}
+
+	private static void writeClass(Path classes, String name, int access, String superName, String... interfaces) throws Exception {
+		ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_8, access, name, null, superName, interfaces);
+		writer.visitEnd();
+		Path file = classes.resolve(name + ".class");
+		Files.createDirectories(file.getParent());
+		Files.write(file, writer.toByteArray());
+	}
+}
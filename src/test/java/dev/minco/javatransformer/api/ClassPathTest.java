@@ -1,14 +1,25 @@
 package dev.minco.javatransformer.api;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
 import java.util.Objects;
 
 import lombok.val;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dev.minco.javatransformer.internal.ClassPaths;
 
 public class ClassPathTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void checkAddReturnsCorrectValue() {
 		val classPath = ClassPath.of();
@@ -39,4 +50,66 @@ public class ClassPathTest {
 		}
 		Assert.assertTrue("Should find java.lang.Object in " + classPath, foundObject);
 	}
+
+	@Test
+	public void checkClassesInJar() {
+		Path jar = folder.getRoot().toPath().resolve("test.jar");
+		new JavaTransformer().transform(JavaTransformer.pathFromClass(ClassPathTest.class), jar);
+
+		try (val classPath = ClassPath.of(jar)) {
+			val classInfo = classPath.getClassInfo(ClassPathTest.class.getName());
+			Assert.assertNotNull("Should find " + ClassPathTest.class.getName() + " in " + jar, classInfo);
+			Assert.assertTrue(classInfo.getMethods().anyMatch(it -> it.getName().equals("checkClassesInJar")));
+		}
+	}
+
+	@Test
+	public void checkSystemClassPathModules() {
+		Assert.assertNotNull("Classes outside java.base should be found", ClassPath.of().getClassInfo("java.sql.Connection"));
+
+		ClassPath base = ClassPaths.SystemClassPath.of(null, Collections.singleton("java.base"));
+		Assert.assertNotNull(base.getClassInfo("java.lang.String"));
+		Assert.assertNull(base.getClassInfo("java.sql.Connection"));
+	}
+
+	@Test
+	public void checkSystemClassPathForJavaHome() {
+		try (val classPath = ClassPaths.SystemClassPath.of(Paths.get(System.getProperty("java.home")), null)) {
+			val classInfo = classPath.getClassInfo("java.util.ArrayList");
+			Assert.assertNotNull(classInfo);
+			Assert.assertEquals("java.util.AbstractList", classInfo.getSuperType().getClassName());
+		}
+	}
+
+	@Test
+	public void checkSharedClassPath() throws Exception {
+		Path jar = folder.getRoot().toPath().resolve("shared.jar");
+		new JavaTransformer().transform(JavaTransformer.pathFromClass(ClassPathTest.class), jar);
+		String name = ClassPathTest.class.getName();
+
+		ClassPath first = ClassPath.shared(jar);
+		ClassPath second = ClassPath.shared(jar);
+		ClassInfo classInfo = first.getClassInfo(name);
+		Assert.assertNotNull(classInfo);
+		Assert.assertSame(classInfo, second.getClassInfo(name));
+		Assert.assertNotNull("Shared classpaths should include the system classpath", first.getClassInfo("java.lang.String"));
+		first.close();
+		first.close();
+		try (ClassPath third = ClassPath.shared(jar)) {
+			Assert.assertSame("Closing one user should not release the shared classes", classInfo, third.getClassInfo(name));
+		}
+
+		Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + 10000));
+		try (ClassPath changed = ClassPath.shared(jar)) {
+			Assert.assertNotSame(classInfo, changed.getClassInfo(name));
+		}
+		second.close();
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void checkSharedClassPathIsReadOnly() {
+		try (ClassPath classPath = ClassPath.shared()) {
+			classPath.addPath(Paths.get("test"));
+		}
+	}
 }
@@ -0,0 +1,137 @@
+package dev.minco.javatransformer.api;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncrementalTransformTest {
+	private static final String ENUM = "dev/minco/javatransformer/api/TestEnum.class";
+	private static final String ANNOTATION = "dev/minco/javatransformer/api/AnnotationWithDefault.class";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testOnlyChangedFilesAreTransformed() throws Exception {
+		Path input = folder.newFolder("input").toPath();
+		Path output = folder.getRoot().toPath().resolve("output.jar");
+		Path classes = JavaTransformer.pathFromClass(TestEnum.class);
+		copy(classes, input, ENUM);
+		copy(classes, input, ANNOTATION);
+		Files.write(input.resolve("a.txt"), "a".getBytes(StandardCharsets.UTF_8));
+
+		AtomicInteger calls = new AtomicInteger();
+		JavaTransformer transformer = new JavaTransformer();
+		transformer.addTransformer(c -> {
+			calls.incrementAndGet();
+			c.accessFlags(it -> it.makeAccessible(true));
+		});
+
+		IncrementalState first = transformer.transformIncremental(input, output, null, null);
+		Assert.assertEquals(2, calls.getAndSet(0));
+		Map<String, byte[]> firstEntries = JarTesting.readJar(output);
+		Assert.assertEquals(3, firstEntries.size());
+		Assert.assertEquals(3, first.getFiles().size());
+
+		IncrementalState second = transformer.transformIncremental(input, output, first, null);
+		Assert.assertEquals(0, calls.get());
+		Assert.assertEquals(first.getFiles(), second.getFiles());
+
+		Path enumFile = input.resolve(ENUM);
+		Files.setLastModifiedTime(enumFile, FileTime.fromMillis(Files.getLastModifiedTime(enumFile).toMillis() + 10000));
+		Files.delete(input.resolve(ANNOTATION));
+		Files.write(input.resolve("a.txt"), "b".getBytes(StandardCharsets.UTF_8));
+		IncrementalState third = transformer.transformIncremental(input, output, second, null);
+		Assert.assertEquals("Touched but unchanged files should not be transformed", 0, calls.get());
+
+		Map<String, byte[]> entries = JarTesting.readJar(output);
+		Assert.assertEquals(2, entries.size());
+		Assert.assertFalse(entries.containsKey(ANNOTATION));
+		Assert.assertEquals("b", new String(entries.get("a.txt"), StandardCharsets.UTF_8));
+		Assert.assertArrayEquals(firstEntries.get(ENUM), entries.get(ENUM));
+
+		transformer.transformIncremental(input, output, third, Collections.singleton(ENUM));
+		Assert.assertEquals(1, calls.get());
+
+		Path stateFile = folder.getRoot().toPath().resolve("state.txt");
+		third.write(stateFile);
+		Assert.assertEquals(third.getFiles(), IncrementalState.read(stateFile).getFiles());
+	}
+
+	@Test
+	public void testStateWithUnusualNames() {
+		Map<String, IncrementalState.FileState> files = new LinkedHashMap<>();
+		files.put("tab\tname.txt", new IncrementalState.FileState(1, 2, "hash"));
+		files.put("line\nbreak.txt", new IncrementalState.FileState(3, 4, "hash"));
+		IncrementalState state = new IncrementalState(folder.getRoot().toPath(), folder.getRoot().toPath().resolve("out"), files);
+
+		Path stateFile = folder.getRoot().toPath().resolve("state.bin");
+		state.write(stateFile);
+		IncrementalState read = IncrementalState.read(stateFile);
+		Assert.assertEquals(state.getFiles(), read.getFiles());
+		Assert.assertEquals(state.getOutput(), read.getOutput());
+	}
+
+	@Test
+	public void testRepeatedJarPasses() throws Exception {
+		Path input = folder.newFolder("input").toPath();
+		Path output = folder.getRoot().toPath().resolve("output.jar");
+		copy(JavaTransformer.pathFromClass(TestEnum.class), input, ENUM);
+		Files.write(input.resolve("a.txt"), "a".getBytes(StandardCharsets.UTF_8));
+
+		JavaTransformer transformer = new JavaTransformer();
+		IncrementalState state = transformer.transformIncremental(input, output, null, null);
+		for (int pass = 0; pass < 2; pass++) {
+			String text = "pass " + pass;
+			Files.write(input.resolve("a.txt"), text.getBytes(StandardCharsets.UTF_8));
+			state = transformer.transformIncremental(input, output, state, null);
+
+			Map<String, byte[]> entries = JarTesting.readJar(output);
+			Assert.assertEquals(2, entries.size());
+			Assert.assertEquals(text, new String(entries.get("a.txt"), StandardCharsets.UTF_8));
+			Assert.assertFalse("Previous output should not still be mapped", isMapped(output));
+		}
+	}
+
+	@Test
+	public void testFolderOutput() throws Exception {
+		Path input = folder.newFolder("input").toPath();
+		Path output = folder.newFolder("output").toPath();
+		copy(JavaTransformer.pathFromClass(TestEnum.class), input, ENUM);
+		Files.write(input.resolve("a.txt"), "a".getBytes(StandardCharsets.UTF_8));
+
+		JavaTransformer transformer = new JavaTransformer();
+		IncrementalState first = transformer.transformIncremental(input, output, null, null);
+		Assert.assertTrue(Files.exists(output.resolve(ENUM)));
+
+		Files.delete(input.resolve("a.txt"));
+		Files.write(input.resolve("b.txt"), "b".getBytes(StandardCharsets.UTF_8));
+		transformer.transformIncremental(input, output, first, null);
+		Assert.assertFalse(Files.exists(output.resolve("a.txt")));
+		Assert.assertTrue(Files.exists(output.resolve("b.txt")));
+	}
+
+	private static void copy(Path from, Path to, String name) throws Exception {
+		Path target = to.resolve(name);
+		Files.createDirectories(target.getParent());
+		Files.copy(from.resolve(name), target);
+	}
+
+	private static boolean isMapped(Path file) throws Exception {
+		Path maps = Paths.get("/proc/self/maps");
+		if (!Files.isReadable(maps))
+			return false;
+		return new String(Files.readAllBytes(maps), StandardCharsets.UTF_8).contains(file.toRealPath().toString());
+	}
+}
@@ -0,0 +1,31 @@
+package dev.minco.javatransformer.api;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import lombok.SneakyThrows;
+
+import dev.minco.javatransformer.internal.util.StreamUtil;
+
+final class JarTesting {
+	private JarTesting() {
+	}
+
+	/**
+	 * @return the contents of each entry in the given jar, keyed by entry name in the order they are stored
+	 */
+	@SneakyThrows
+	static Map<String, byte[]> readJar(Path jar) {
+		Map<String, byte[]> result = new LinkedHashMap<>();
+		try (ZipInputStream is = new ZipInputStream(Files.newInputStream(jar))) {
+			ZipEntry entry;
+			while ((entry = is.getNextEntry()) != null)
+				result.put(entry.getName(), StreamUtil.readFully(is));
+		}
+		return result;
+	}
+}
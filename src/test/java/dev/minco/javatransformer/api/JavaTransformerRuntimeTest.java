@@ -1,27 +1,40 @@
 package dev.minco.javatransformer.api;
 
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import lombok.val;
 
 import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import dev.minco.javatransformer.api.code.CodeFragment;
 import dev.minco.javatransformer.api.code.IntermediateValue;
 import dev.minco.javatransformer.internal.ByteCodeInfo;
+import dev.minco.javatransformer.internal.ClassStubInfo;
+import dev.minco.javatransformer.internal.SourceInfo;
 import dev.minco.javatransformer.internal.asm.DebugPrinter;
+import dev.minco.javatransformer.internal.zip.ZipWriter;
 import dev.minco.javatransformer.transform.CodeFragmentTesting;
 
 public class JavaTransformerRuntimeTest {
 	private static final List<String> EXPECTED_METHOD_CALL_INPUTS = Arrays.asList("1", "2", "3", "4");
 	private static final int EXPECTED_METHOD_CALL_COUNT = 4;
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
 
 	@Test
 	public void testTransformRuntime() throws Exception {
@@ -105,4 +118,64 @@ public class JavaTransformerRuntimeTest {
 		Assert.assertEquals(null, System.getProperty("finishedTestAbortEarly"));
 	}
 
+	@Test
+	public void testClassInfosOutliveLoad() throws Exception {
+		Path jar = folder.getRoot().toPath().resolve("retained.jar");
+		try (InputStream is = TestEnum.class.getResourceAsStream("TestEnum.class"); ZipWriter writer = ZipWriter.create(jar)) {
+			Assert.assertNotNull(is);
+			writer.write("dev/minco/javatransformer/api/TestEnum.class", is.readAllBytes());
+			writer.write("org/example/Retained.java", "package org.example;\n\npublic class Retained {}\n".getBytes(StandardCharsets.UTF_8));
+		}
+
+		AtomicReference<ClassPath> retained = new AtomicReference<>();
+		JavaTransformer transformer = new JavaTransformer();
+		transformer.addTransformer("org.example.Retained", c -> retained.set(((SourceInfo) c).getClassPath()));
+		transformer.load(jar);
+		Assert.assertNotNull(retained.get());
+
+		// classes from the loaded jar must be read again, after the load has finished
+		ClassStubInfo.getCache().clear();
+		ClassInfo info = retained.get().getClassInfo(TestEnum.class.getName());
+		Assert.assertNotNull(info);
+		Assert.assertEquals("java.lang.Enum", info.getSuperType().getClassName());
+
+		transformer.close();
+	}
+
+	@Test
+	public void testClosedClassPathStubsAreEvicted() throws Exception {
+		Path jar = folder.getRoot().toPath().resolve("evicted.jar");
+		try (InputStream is = TestEnum.class.getResourceAsStream("TestEnum.class"); ZipWriter writer = ZipWriter.create(jar)) {
+			Assert.assertNotNull(is);
+			writer.write("dev/minco/javatransformer/api/TestEnum.class", is.readAllBytes());
+		}
+
+		ClassStubInfo.getCache().clear();
+		ClassPath classPath = ClassPath.of(jar);
+		ClassInfo info = classPath.getClassInfo(TestEnum.class.getName());
+		Assert.assertNotNull(info);
+		Assert.assertEquals("java.lang.Enum", info.getSuperType().getClassName());
+		Assert.assertEquals(1, ClassStubInfo.getCache().size());
+
+		classPath.close();
+		Assert.assertEquals("Closing a class path should evict its classes from the shared cache", 0, ClassStubInfo.getCache().size());
+	}
+
+	@Test
+	public void testTransformReleasesInput() throws Exception {
+		Path maps = Paths.get("/proc/self/maps");
+		Assume.assumeTrue("Needs /proc/self/maps to see mappings", Files.isReadable(maps));
+		Path jar = folder.getRoot().toPath().resolve("released.jar");
+		try (InputStream is = TestEnum.class.getResourceAsStream("TestEnum.class"); ZipWriter writer = ZipWriter.create(jar)) {
+			Assert.assertNotNull(is);
+			writer.write("dev/minco/javatransformer/api/TestEnum.class", is.readAllBytes());
+		}
+
+		JavaTransformer transformer = new JavaTransformer();
+		transformer.addTransformer(c -> c.accessFlags(it -> it.makeAccessible(true)));
+		transformer.transform(jar, folder.getRoot().toPath().resolve("released-output.jar"));
+
+		Assert.assertFalse("transform should not keep its input mapped", new String(Files.readAllBytes(maps), StandardCharsets.UTF_8).contains(jar.toRealPath().toString()));
+	}
+
 }
@@ -9,7 +9,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import lombok.val;
@@ -20,6 +23,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.tree.ClassNode;
 
 import com.github.javaparser.JavaParser;
@@ -69,6 +73,151 @@ public class JavaTransformerTest {
 		Assert.assertNull("Should skip package-info.java", new JavaTransformer().transformBytes(null, "org/example/test/package-info.java", null));
 	}
 
+	@Test
+	public void testParallelLoadMatchesSequential() throws Exception {
+		val sequential = loadWithExecutor(null);
+		val pool = new ForkJoinPool(4);
+		try {
+			val parallel = loadWithExecutor(pool);
+			Assert.assertEquals(new ArrayList<>(sequential.keySet()), new ArrayList<>(parallel.keySet()));
+			sequential.forEach((name, bytes) -> Assert.assertArrayEquals(name, bytes, parallel.get(name)));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testStreamingTransformMatchesInMemory() throws Exception {
+		Path inMemory = folder.getRoot().toPath().resolve("in-memory.jar");
+		Path streamed = folder.getRoot().toPath().resolve("streamed.jar");
+
+		JavaTransformer transformer = new JavaTransformer();
+		transformer.getClassPath().addPaths(extraPaths);
+		transformer.addTransformer(c -> c.accessFlags(it -> it.makeAccessible(true)));
+		transformer.transform(input, inMemory);
+		transformer.setStreaming(true);
+		transformer.transform(input, streamed);
+		Assert.assertTrue("Streaming transform should not keep results in memory", transformer.getTransformedFiles().isEmpty());
+
+		assertJarsEqual(inMemory, streamed);
+
+		// jar input, unchanged entries are copied without recompressing
+		Path copied = folder.getRoot().toPath().resolve("copied.jar");
+		new JavaTransformer().transform(streamed, copied);
+		val streamingCopy = new JavaTransformer();
+		streamingCopy.setStreaming(true);
+		Path streamedCopy = folder.getRoot().toPath().resolve("streamed-copy.jar");
+		streamingCopy.transform(streamed, streamedCopy);
+		assertJarsEqual(copied, streamedCopy);
+		assertJarsEqual(streamed, streamedCopy);
+	}
+
+	@Test
+	public void testFailedStreamingTransformLeavesNoJar() throws Exception {
+		Path streamed = folder.getRoot().toPath().resolve("failed.jar");
+		AtomicInteger calls = new AtomicInteger();
+
+		JavaTransformer transformer = new JavaTransformer();
+		transformer.getClassPath().addPaths(extraPaths);
+		transformer.setStreaming(true);
+		transformer.addTransformer(c -> {
+			if (calls.incrementAndGet() == 2)
+				throw new IllegalStateException("Transformer failed");
+		});
+		try {
+			transformer.transform(input, streamed);
+			Assert.fail("The transformer's exception should be thrown");
+		} catch (RuntimeException ignored) {
+		}
+
+		Assert.assertFalse("A failed streaming transform should not leave a jar", Files.exists(streamed));
+		Assert.assertFalse(Files.exists(streamed.resolveSibling("failed.jar.tmp")));
+	}
+
+	@Test
+	public void testTransformCacheSkipsUnchangedEntries() throws Exception {
+		Path uncached = folder.getRoot().toPath().resolve("uncached.jar");
+		Path first = folder.getRoot().toPath().resolve("first.jar");
+		Path second = folder.getRoot().toPath().resolve("second.jar");
+		AtomicInteger calls = new AtomicInteger();
+
+		JavaTransformer transformer = new JavaTransformer();
+		transformer.getClassPath().addPaths(extraPaths);
+		transformer.addTransformer(c -> {
+			calls.incrementAndGet();
+			c.accessFlags(it -> it.makeAccessible(true));
+		});
+		transformer.transform(input, uncached);
+		int uncachedCalls = calls.getAndSet(0);
+
+		TransformCache cache = new TransformCache(folder.newFolder("cache").toPath(), "test", Long.MAX_VALUE);
+		transformer.setTransformCache(cache);
+		transformer.transform(input, first);
+		Assert.assertEquals(uncachedCalls, calls.getAndSet(0));
+		transformer.transform(input, second);
+		Assert.assertEquals("Cached entries should not be transformed again", 0, calls.get());
+		Assert.assertEquals(uncachedCalls, cache.getHits());
+
+		assertJarsEqual(uncached, first);
+		assertJarsEqual(uncached, second);
+
+		TransformCache small = new TransformCache(folder.newFolder("small-cache").toPath(), "test", 1);
+		transformer.setTransformCache(small);
+		transformer.transform(input, first);
+		Assert.assertEquals("Entries over the size limit should be evicted", 0, small.getSize());
+	}
+
+	@Test
+	public void testTransformCacheCountsReplacedEntriesOnce() throws Exception {
+		TransformCache cache = new TransformCache(folder.newFolder("replaced-cache").toPath(), "test", Long.MAX_VALUE);
+		byte[] input = {1, 2, 3};
+		byte[] output = {4, 5, 6, 7};
+		String key = cache.key("a.class", input);
+
+		cache.put(key, input, output);
+		long size = cache.getSize();
+		cache.put(key, input, output);
+		Assert.assertEquals("Storing an entry again should replace it", size, cache.getSize());
+		Assert.assertArrayEquals(output, cache.get(key, input));
+	}
+
+	@Test
+	public void testTransformCacheDiscardsEmptyEntries() throws Exception {
+		Path directory = folder.newFolder("damaged-cache").toPath();
+		TransformCache cache = new TransformCache(directory, "test", Long.MAX_VALUE);
+		byte[] input = {1, 2, 3};
+		String key = cache.key("a.class", input);
+
+		cache.put(key, input, new byte[]{4, 5, 6, 7});
+		List<Path> entries;
+		try (val files = Files.walk(directory)) {
+			entries = files.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+		Assert.assertEquals(1, entries.size());
+		Files.write(entries.get(0), new byte[0]);
+
+		Assert.assertNull("An empty entry should not be treated as unchanged", cache.get(key, input));
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertFalse("A damaged entry should be removed", Files.exists(entries.get(0)));
+	}
+
+	private static void assertJarsEqual(Path expectedJar, Path actualJar) {
+		val expected = JarTesting.readJar(expectedJar);
+		val actual = JarTesting.readJar(actualJar);
+		Assert.assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+		expected.forEach((name, bytes) -> Assert.assertArrayEquals(name, bytes, actual.get(name)));
+	}
+
+	private Map<String, byte[]> loadWithExecutor(ForkJoinPool pool) {
+		JavaTransformer transformer = new JavaTransformer();
+		transformer.setExecutor(pool);
+		transformer.setMaxInFlight(8);
+		transformer.getClassPath().addPaths(extraPaths);
+		transformer.addTransformer(c -> c.accessFlags(it -> it.makeAccessible(true)));
+		transformer.load(input);
+		return transformer.getTransformedFiles();
+	}
+
 	@SuppressWarnings("ResultOfMethodCallIgnored")
 	@Test
 	public void testTransform() throws Exception {
@@ -76,7 +225,7 @@ public class JavaTransformerTest {
 
 		JavaTransformer transformer = new JavaTransformer();
 		transformer.getClassPath().addPaths(extraPaths);
-		transformer.getClassPath().addPaths(Arrays.asList(JavaTransformer.pathFromClass(Assert.class), JavaTransformer.pathFromClass(ClassNode.class), JavaTransformer.pathFromClass(JavaParser.class)));
+		transformer.getClassPath().addPaths(Arrays.asList(JavaTransformer.pathFromClass(Assert.class), JavaTransformer.pathFromClass(ClassNode.class), JavaTransformer.pathFromClass(ClassVisitor.class), JavaTransformer.pathFromClass(JavaParser.class)));
 
 		val targetMethod = "testMethodCallExpression";
 		val targetClass = this.getClass().getName();
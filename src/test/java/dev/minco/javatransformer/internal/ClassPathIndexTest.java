@@ -0,0 +1,101 @@
+package dev.minco.javatransformer.internal;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import lombok.val;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dev.minco.javatransformer.api.ClassInfo;
+import dev.minco.javatransformer.api.ClassPath;
+import dev.minco.javatransformer.api.JavaTransformer;
+import dev.minco.javatransformer.api.TestEnum;
+import dev.minco.javatransformer.internal.zip.ZipReader;
+
+public class ClassPathIndexTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void clearIndexDirectory() {
+		System.clearProperty(ClassPathIndex.DIRECTORY_PROPERTY);
+	}
+
+	@Test
+	public void testIndexIsReusedUntilJarChanges() throws Exception {
+		Path jar = folder.getRoot().toPath().resolve("test.jar");
+		Path indexDirectory = folder.newFolder("index").toPath();
+		new JavaTransformer().transform(JavaTransformer.pathFromClass(ClassPathIndexTest.class), jar);
+		System.setProperty(ClassPathIndex.DIRECTORY_PROPERTY, indexDirectory.toString());
+
+		Path normalised = jar.toAbsolutePath().normalize();
+		Assert.assertNull(ClassPathIndex.load(indexDirectory, normalised, ClassPaths.getTargetRelease()));
+		try (val classPath = ClassPath.of(jar)) {
+			checkClassInfo(classPath.getClassInfo(TestEnum.class.getName()));
+		}
+		Assert.assertNotNull("Index should be stored when the jar is first loaded", ClassPathIndex.load(indexDirectory, normalised, ClassPaths.getTargetRelease()));
+
+		try (val classPath = ClassPath.of(jar)) {
+			checkClassInfo(classPath.getClassInfo(TestEnum.class.getName()));
+			Assert.assertTrue(classPath.getClassInfo(ClassPathIndexTest.class.getName()).getMethods().anyMatch(it -> it.getName().equals("testIndexIsReusedUntilJarChanges")));
+		}
+
+		Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + 10000));
+		Assert.assertNull("Index should not be used after the jar changes", ClassPathIndex.load(indexDirectory, normalised, ClassPaths.getTargetRelease()));
+		try (val classPath = ClassPath.of(jar)) {
+			checkClassInfo(classPath.getClassInfo(TestEnum.class.getName()));
+		}
+		Assert.assertNotNull(ClassPathIndex.load(indexDirectory, normalised, ClassPaths.getTargetRelease()));
+	}
+
+	@Test
+	public void testUnwritableIndexDirectory() throws Exception {
+		Path jar = folder.getRoot().toPath().resolve("test.jar");
+		new JavaTransformer().transform(JavaTransformer.pathFromClass(ClassPathIndexTest.class), jar);
+		Path notADirectory = folder.newFile("index").toPath();
+		System.setProperty(ClassPathIndex.DIRECTORY_PROPERTY, notADirectory.toString());
+
+		try (val classPath = ClassPath.of(jar)) {
+			checkClassInfo(classPath.getClassInfo(TestEnum.class.getName()));
+		}
+	}
+
+	@Test
+	public void testLoadedStubsAreCached() throws Exception {
+		Path jar = folder.getRoot().toPath().resolve("test.jar");
+		Path indexDirectory = folder.newFolder("index").toPath();
+		new JavaTransformer().transform(JavaTransformer.pathFromClass(ClassPathIndexTest.class), jar);
+		Path normalised = jar.toAbsolutePath().normalize();
+		try (val reader = ZipReader.open(normalised)) {
+			ClassPathIndex.build(normalised, reader, ClassPaths.getTargetRelease(), ClassPath.of()).save(indexDirectory);
+		}
+
+		ClassPathIndex index = ClassPathIndex.load(indexDirectory, normalised, ClassPaths.getTargetRelease());
+		Assert.assertNotNull(index);
+		ClassInfo stub = null;
+		for (ClassStubInfo info : index.getClasses())
+			if (info.getName().equals(TestEnum.class.getName()))
+				stub = info;
+
+		long misses = ClassStubInfo.getCache().getMisses();
+		checkClassInfo(stub);
+		Assert.assertEquals("Header should be loaded through the cache", misses + 1, ClassStubInfo.getCache().getMisses());
+
+		ClassStubInfo.getCache().clear();
+		checkClassInfo(stub);
+		Assert.assertEquals(misses + 2, ClassStubInfo.getCache().getMisses());
+	}
+
+	private static void checkClassInfo(ClassInfo classInfo) {
+		Assert.assertNotNull(classInfo);
+		Assert.assertEquals("java.lang.Enum", classInfo.getSuperType().getClassName());
+		Assert.assertTrue(classInfo.getMethods().anyMatch(it -> it.getName().equals("values")));
+		Assert.assertTrue(classInfo.getFields().anyMatch(it -> it.getName().equals("FIRST")));
+	}
+}
@@ -0,0 +1,82 @@
+package dev.minco.javatransformer.internal;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import dev.minco.javatransformer.api.ClassInfo;
+import dev.minco.javatransformer.api.FieldInfo;
+import dev.minco.javatransformer.api.JavaTransformer;
+import dev.minco.javatransformer.api.MethodInfo;
+import dev.minco.javatransformer.api.Parameter;
+import dev.minco.javatransformer.internal.asm.AsmUtil;
+import dev.minco.javatransformer.internal.util.CachingSupplier;
+import dev.minco.javatransformer.internal.util.CollectionUtil;
+
+public class ClassStubInfoTest {
+	@Test
+	public void testMatchesByteCodeInfo() throws Exception {
+		String name = CachingSupplier.class.getName();
+		byte[] data = Files.readAllBytes(JavaTransformer.pathFromClass(CachingSupplier.class).resolve(name.replace('.', '/') + ".class"));
+
+		ClassInfo stub = new ClassStubInfo(name, () -> data);
+		ClassInfo full = new ByteCodeInfo(() -> AsmUtil.getClassNode(data, null), name, Collections.emptyMap());
+
+		Assert.assertEquals(full.getAccessFlags(), stub.getAccessFlags());
+		Assert.assertEquals(full.getSuperType(), stub.getSuperType());
+		Assert.assertEquals(full.getInterfaceTypes(), stub.getInterfaceTypes());
+		Assert.assertEquals(full.getTypeVariables(), stub.getTypeVariables());
+		Assert.assertEquals(describe(full), describe(stub));
+		Assert.assertEquals(fields(full), fields(stub));
+	}
+
+	@Test
+	public void testReadAgainAfterEviction() throws Exception {
+		String name = CachingSupplier.class.getName();
+		byte[] data = Files.readAllBytes(JavaTransformer.pathFromClass(CachingSupplier.class).resolve(name.replace('.', '/') + ".class"));
+		AtomicInteger reads = new AtomicInteger();
+		ClassInfo stub = new ClassStubInfo(name, () -> {
+			reads.incrementAndGet();
+			return data;
+		});
+
+		long misses = ClassStubInfo.getCache().getMisses();
+		Assert.assertEquals("java.lang.Object", stub.getSuperType().getClassName());
+		Assert.assertTrue(stub.getMethods().anyMatch(it -> it.getName().equals("get")));
+		Assert.assertEquals(1, reads.get());
+		Assert.assertEquals(misses + 1, ClassStubInfo.getCache().getMisses());
+
+		ClassStubInfo.getCache().clear();
+		Assert.assertTrue(stub.getMethods().anyMatch(it -> it.getName().equals("get")));
+		Assert.assertEquals(2, reads.get());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testReadOnly() {
+		ClassInfo stub = new ClassStubInfo("a.B", () -> new byte[0]);
+		stub.setName("a.C");
+	}
+
+	private static List<String> describe(ClassInfo classInfo) {
+		List<String> methods = new ArrayList<>();
+		for (MethodInfo method : CollectionUtil.iterable(classInfo.getMethods())) {
+			StringBuilder description = new StringBuilder(method.getName()).append(' ').append(method.getReturnType());
+			for (Parameter parameter : method.getParameters())
+				description.append(' ').append(parameter.type);
+			methods.add(description.append(' ').append(method.getTypeVariables()).toString());
+		}
+		return methods;
+	}
+
+	private static List<String> fields(ClassInfo classInfo) {
+		List<String> fields = new ArrayList<>();
+		for (FieldInfo field : CollectionUtil.iterable(classInfo.getFields()))
+			fields.add(field.toString());
+		return fields;
+	}
+}
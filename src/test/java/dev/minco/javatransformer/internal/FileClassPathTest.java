@@ -0,0 +1,149 @@
+package dev.minco.javatransformer.internal;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dev.minco.javatransformer.api.ClassInfo;
+import dev.minco.javatransformer.api.JavaTransformer;
+import dev.minco.javatransformer.api.TestEnum;
+import dev.minco.javatransformer.api.Type;
+
+public class FileClassPathTest {
+	private static final String API = "dev.minco.javatransformer.api";
+	private static final String TRANSFORM = "dev.minco.javatransformer.transform";
+	private static final String ENUM = "dev/minco/javatransformer/api/TestEnum.class";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testOnlyRequestedPackagesAreLoaded() {
+		Path classes = JavaTransformer.pathFromClass(FileClassPathTest.class);
+		ClassPaths.FileClassPath classPath = new ClassPaths.FileClassPath(null, new ArrayList<>(Collections.singletonList(classes)));
+
+		Assert.assertNotNull(classPath.getClassInfo(TestEnum.class.getName()));
+		Assert.assertEquals(Collections.singleton(API), classPath.getLoadedPackages());
+
+		Assert.assertNotNull(classPath.getClassInfo(TRANSFORM + ".InnerClassExample$Inner"));
+		Assert.assertNull(classPath.getClassInfo(TRANSFORM + ".Missing"));
+		Assert.assertNull(classPath.getClassInfo("missing.Missing"));
+		Assert.assertEquals(new HashSet<>(Arrays.asList(API, TRANSFORM, "missing")), classPath.getLoadedPackages());
+	}
+
+	@Test
+	public void testClassNamesInPackage() {
+		Path classes = JavaTransformer.pathFromClass(FileClassPathTest.class);
+		ClassPaths.FileClassPath classPath = new ClassPaths.FileClassPath(ClassPaths.SystemClassPath.SYSTEM_CLASS_PATH, new ArrayList<>(Collections.singletonList(classes)));
+
+		Assert.assertTrue(classPath.getClassNames(API).contains("TestEnum"));
+		Assert.assertTrue(classPath.getClassNames(TRANSFORM).contains("InnerClassExample$Inner"));
+		Assert.assertTrue(classPath.getClassNames("java.lang").isEmpty());
+		Assert.assertTrue(ClassPaths.classNamesIn(classPath, "java.lang").contains("String"));
+		Assert.assertTrue(ClassPaths.classNamesIn(classPath, API).contains("TestEnum"));
+		Assert.assertTrue(ClassPaths.classNamesIn(classPath, "missing").isEmpty());
+	}
+
+	@Test
+	public void testPathAddedAfterLookup() {
+		Path jar = folder.getRoot().toPath().resolve("test.jar");
+		new JavaTransformer().transform(JavaTransformer.pathFromClass(FileClassPathTest.class), jar);
+
+		ClassPaths.FileClassPath classPath = new ClassPaths.FileClassPath(null, new ArrayList<>());
+		Assert.assertNull(classPath.getClassInfo(TestEnum.class.getName()));
+		Assert.assertTrue(classPath.addPath(jar));
+		Assert.assertNotNull("Packages looked up before a path is added should be loaded from it", classPath.getClassInfo(TestEnum.class.getName()));
+		Assert.assertNotNull(classPath.getClassInfo(TRANSFORM + ".InnerClassExample"));
+		classPath.close();
+	}
+
+	@Test
+	public void testConcurrentLookups() throws Exception {
+		Path classes = JavaTransformer.pathFromClass(FileClassPathTest.class);
+		ClassPaths.FileClassPath classPath = new ClassPaths.FileClassPath(null, new ArrayList<>(Collections.singletonList(classes)));
+		String[] names = {TestEnum.class.getName(), TRANSFORM + ".InnerClassExample", TRANSFORM + ".InnerClassExample$Inner", FileClassPathTest.class.getName()};
+
+		ClassInfo[][] found = new ClassInfo[16][names.length];
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < found.length; i++) {
+			ClassInfo[] result = found[i];
+			threads.add(new Thread(() -> {
+				for (int j = 0; j < names.length; j++) {
+					String name = names[j];
+					ClassInfo classInfo = classPath.getClassInfo(name);
+					classInfo.getSuperType();
+					result[j] = classInfo;
+				}
+			}));
+		}
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+
+		for (ClassInfo[] result : found)
+			for (int i = 0; i < names.length; i++) {
+				String name = names[i];
+				ClassInfo expected = found[0][i];
+				ClassInfo classInfo = result[i];
+				Assert.assertNotNull(name, classInfo);
+				Assert.assertSame(name, expected, classInfo);
+			}
+	}
+
+	@Test
+	public void testMultiReleaseJar() throws Exception {
+		Path classes = JavaTransformer.pathFromClass(FileClassPathTest.class);
+		byte[] enumClass = Files.readAllBytes(classes.resolve(ENUM));
+		byte[] annotationClass = Files.readAllBytes(classes.resolve("dev/minco/javatransformer/api/AnnotationWithDefault.class"));
+		Path jar = folder.getRoot().toPath().resolve("multi.jar");
+
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().putValue("Multi-Release", "true");
+		try (JarOutputStream os = new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+			write(os, ENUM, enumClass);
+			write(os, "META-INF/versions/9/" + ENUM, annotationClass);
+			write(os, "META-INF/versions/99999/" + ENUM, enumClass);
+			write(os, "module-info.class", enumClass);
+			write(os, "META-INF/versions/9/module-info.class", enumClass);
+		}
+
+		try {
+			ClassPaths.FileClassPath classPath = new ClassPaths.FileClassPath(null, new ArrayList<>(Collections.singletonList(jar)));
+			Assert.assertTrue("Version 9 should replace the base entry", classPath.getClassInfo(TestEnum.class.getName()).getInterfaceTypes().contains(new Type("Ljava/lang/annotation/Annotation;")));
+			Assert.assertNull(classPath.getClassInfo("module-info"));
+			int count = 0;
+			for (ClassInfo ignored : classPath)
+				count++;
+			Assert.assertEquals(1, count);
+			classPath.close();
+
+			System.setProperty(ClassPaths.RELEASE_PROPERTY, "8");
+			classPath = new ClassPaths.FileClassPath(null, new ArrayList<>(Collections.singletonList(jar)));
+			Assert.assertEquals("java.lang.Enum", classPath.getClassInfo(TestEnum.class.getName()).getSuperType().getClassName());
+			classPath.close();
+		} finally {
+			System.clearProperty(ClassPaths.RELEASE_PROPERTY);
+		}
+	}
+
+	private static void write(JarOutputStream os, String name, byte[] data) throws Exception {
+		os.putNextEntry(new JarEntry(name));
+		os.write(data);
+		os.closeEntry();
+	}
+}
@@ -1,17 +1,23 @@
 package dev.minco.javatransformer.internal;
 
+import java.util.Collections;
 import java.util.HashMap;
 
 import lombok.val;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import dev.minco.javatransformer.api.AccessFlags;
+import dev.minco.javatransformer.api.FieldInfo;
 import dev.minco.javatransformer.api.MethodInfo;
 import dev.minco.javatransformer.api.Parameter;
 import dev.minco.javatransformer.api.Type;
+import dev.minco.javatransformer.internal.asm.LazyClassNode;
 
 public class MethodNodeInfoTest {
 	@Test
@@ -37,4 +43,49 @@ public class MethodNodeInfoTest {
 
 		Assert.assertEquals("(Ljava/lang/String;)Ljava/lang/Boolean;", ((ByteCodeInfo.MethodNodeInfo) info).getDescriptor());
 	}
+
+	@Test
+	public void testMemberLookupFollowsChanges() {
+		ClassNode classNode = new ClassNode();
+		classNode.name = "test/Test";
+		ByteCodeInfo b = new ByteCodeInfo(() -> classNode, "test.Test", new HashMap<>());
+		MethodInfo method = SimpleMethodInfo.of(new AccessFlags(AccessFlags.ACC_PUBLIC), Collections.emptyList(), Type.of("java.lang.String"), "first", Collections.emptyList());
+		FieldInfo field = SimpleFieldInfo.of(new AccessFlags(AccessFlags.ACC_PUBLIC), Type.of("java.lang.String"), "field");
+
+		Assert.assertNull(b.get(method));
+		b.add(method);
+		b.add(field);
+		MethodInfo found = b.get(method);
+		Assert.assertNotNull(found);
+		Assert.assertSame("Wrappers should be reused", found, b.get(method));
+		Assert.assertSame(found, b.getMethod("first", "()Ljava/lang/String;"));
+		Assert.assertNull(b.getMethod("first", "()V"));
+		Assert.assertNotNull(b.get(field));
+
+		found.setName("renamed");
+		Assert.assertNull(b.get(method));
+		Assert.assertSame(found, b.getMethod("renamed", "()Ljava/lang/String;"));
+
+		b.remove(found);
+		Assert.assertNull(b.getMethod("renamed", "()Ljava/lang/String;"));
+
+		b.getNode().get().fields.add(new FieldNode(AccessFlags.ACC_PUBLIC, "direct", "I", null, null));
+		FieldInfo direct = SimpleFieldInfo.of(new AccessFlags(AccessFlags.ACC_PUBLIC), Type.INT, "direct");
+		Assert.assertNotNull("Members added directly to the node should be found", b.get(direct));
+	}
+
+	@Test
+	public void testNodeAccessLoadsCode() throws Exception {
+		LazyClassNode classNode = new LazyClassNode(new ClassReader(MethodNodeInfoTest.class.getName()));
+		ByteCodeInfo b = new ByteCodeInfo(() -> classNode, MethodNodeInfoTest.class.getName(), new HashMap<>());
+		ByteCodeInfo.MethodNodeInfo method = b.getMethod("testWrap", "()V");
+		MethodNode other = b.getMethod("testMemberLookupFollowsChanges", "()V").node;
+
+		Assert.assertFalse(classNode.isCodeLoaded(method.node));
+		Assert.assertNotEquals(0, method.getNode().instructions.size());
+		Assert.assertFalse(classNode.isCodeLoaded(other));
+
+		Assert.assertSame(classNode, b.getNode().get());
+		Assert.assertTrue("Getting the class node should read all code", classNode.isCodeLoaded(other));
+	}
 }
@@ -1,18 +1,35 @@
 package dev.minco.javatransformer.internal;
 
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 
 import lombok.val;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.SwitchEntry;
 import com.github.javaparser.ast.type.TypeParameter;
 
+import dev.minco.javatransformer.api.ClassInfo;
 import dev.minco.javatransformer.api.ClassPath;
+import dev.minco.javatransformer.api.JavaTransformer;
+import dev.minco.javatransformer.api.MethodInfo;
 import dev.minco.javatransformer.api.TransformationException;
 import dev.minco.javatransformer.api.Type;
+import dev.minco.javatransformer.internal.javaparser.CompilationUnitInfo;
+import dev.minco.javatransformer.internal.javaparser.Expressions;
+import dev.minco.javatransformer.internal.javaparser.LocalVariableTable;
 
 public class ResolutionContextTest {
 	private ResolutionContext context() {
@@ -107,4 +124,153 @@ public class ResolutionContextTest {
 		Assert.assertNotNull(t);
 		Assert.assertEquals("java.util.Hashtable", t.getClassName());
 	}
+
+	@Test
+	public void testResolutionIsSharedWithinCompilationUnit() {
+		CompilationUnit cu = StaticJavaParser.parse("package org.example; import java.util.*; import java.util.function.Supplier; class Example {}");
+		TypeDeclaration<?> type = cu.getType(0);
+		CountingClassPath classPath = new CountingClassPath();
+		ResolutionContext first = ResolutionContext.of(type, type, classPath, null);
+		ResolutionContext second = ResolutionContext.of(type, type, classPath, null);
+
+		Assert.assertEquals("java.util.List", first.resolve("List").getClassName());
+		Assert.assertEquals("java.util.function.Supplier", first.resolve("Supplier").getClassName());
+		Assert.assertFalse(resolves(first, "Missing"));
+		int lookups = classPath.lookups;
+
+		Assert.assertEquals("java.util.List", second.resolve("List<Supplier>").getClassName());
+		Assert.assertFalse(resolves(second, "Missing"));
+		Assert.assertEquals("Names resolved by another member of the unit should not be looked up again", lookups, classPath.lookups);
+	}
+
+	@Test
+	public void testSelfReferencingTypeParameterBound() {
+		TypeParameter comparable = new TypeParameter("T", NodeList.nodeList(StaticJavaParser.parseClassOrInterfaceType("Comparable<T>")));
+		ResolutionContext context = new ResolutionContext("org.example", Collections.emptyList(), Collections.singletonList(comparable), ClassPath.of(), null);
+
+		Type type = context.resolve("T");
+		Assert.assertEquals("Ljava/lang/Comparable;", type.descriptor);
+		Assert.assertEquals("TT;", type.signature);
+	}
+
+	@Test
+	public void testImportTable() {
+		CompilationUnit cu = StaticJavaParser.parse("package dev.minco.javatransformer.api; import java.util.*; import java.util.concurrent.atomic.*; import java.util.Map; class Example {}");
+		TypeDeclaration<?> type = cu.getType(0);
+		ResolutionContext context = ResolutionContext.of(type, type, ClassPath.of(JavaTransformer.pathFromClass(ResolutionContextTest.class)), null);
+
+		Assert.assertEquals("java.util.ArrayList", context.resolve("ArrayList").getClassName());
+		Assert.assertEquals("java.util.concurrent.atomic.AtomicLong", context.resolve("AtomicLong").getClassName());
+		Assert.assertEquals("java.util.Map$Entry", context.resolve("Map.Entry").getClassName());
+		Assert.assertEquals("java.lang.Thread", context.resolve("Thread").getClassName());
+		Assert.assertEquals("dev.minco.javatransformer.api.TestEnum", context.resolve("TestEnum").getClassName());
+		Assert.assertEquals("java.util.HashMap", context.resolve("java.util.HashMap").getClassName());
+		Assert.assertFalse(resolves(context, "AtomicMissing"));
+	}
+
+	@Test
+	public void testImportChangeClearsResolved() {
+		CompilationUnit cu = StaticJavaParser.parse("package org.example; import java.util.List; class Example {}");
+		TypeDeclaration<?> type = cu.getType(0);
+		ResolutionContext context = ResolutionContext.of(type, type, ClassPath.of(), null);
+		Assert.assertEquals("java.util.List", context.resolve("List").getClassName());
+
+		cu.getImports().clear();
+		cu.addImport("java.awt.List");
+		Assert.assertEquals("Names resolved before the imports changed should be resolved again", "java.awt.List", context.resolve("List").getClassName());
+	}
+
+	@Test
+	public void testLocalVariablesAreScoped() {
+		CompilationUnit cu = StaticJavaParser.parse("package org.example; class Example { void test() { { String value = null; value.length(); } { Integer value = 1; value.intValue(); } } }");
+		ClassPath classPath = ClassPath.of();
+		SourceInfo info = CompilationUnitInfo.getSourceInfos(cu, classPath).get(0);
+		SourceInfo.MethodDeclarationWrapper method = (SourceInfo.MethodDeclarationWrapper) info.getMethods().findFirst().get();
+		BlockStmt body = method.getBody();
+		ResolutionContext context = ResolutionContext.of(body, info.getJavaParserType(), classPath, method);
+		BlockStmt first = body.getStatement(0).asBlockStmt();
+		BlockStmt second = body.getStatement(1).asBlockStmt();
+		Expression firstUse = first.getStatement(1).asExpressionStmt().getExpression().asMethodCallExpr().getScope().get();
+		Expression secondUse = second.getStatement(1).asExpressionStmt().getExpression().asMethodCallExpr().getScope().get();
+
+		Assert.assertEquals(Type.STRING, Expressions.expressionToType(firstUse, context, true));
+		Assert.assertEquals(Type.of("java.lang.Integer"), Expressions.expressionToType(secondUse, context, true));
+
+		VariableDeclarator declarator = second.getStatement(0).asExpressionStmt().getExpression().asVariableDeclarationExpr().getVariable(0);
+		declarator.setType("Long");
+		Assert.assertEquals("Changing the body should discard its locals", Type.of("java.lang.Long"), Expressions.expressionToType(secondUse, context, true));
+	}
+
+	@Test
+	public void testSwitchGroupsShareScope() {
+		CompilationUnit cu = StaticJavaParser.parse("package org.example; class Example { void test(int k) { switch (k) { case 0: k++; case 1: String value = null; case 2: value = \"\"; value.length(); break; } } }");
+		ClassPath classPath = ClassPath.of();
+		SourceInfo info = CompilationUnitInfo.getSourceInfos(cu, classPath).get(0);
+		SourceInfo.MethodDeclarationWrapper method = (SourceInfo.MethodDeclarationWrapper) info.getMethods().findFirst().get();
+		BlockStmt body = method.getBody();
+		ResolutionContext context = ResolutionContext.of(body, info.getJavaParserType(), classPath, method);
+		SwitchEntry third = body.getStatement(0).asSwitchStmt().getEntry(2);
+		Expression use = third.getStatement(1).asExpressionStmt().getExpression().asMethodCallExpr().getScope().get();
+
+		Assert.assertEquals("Variables declared in one case should be visible in the cases after it", Type.STRING, Expressions.expressionToType(use, context, true));
+		Assert.assertNotNull(LocalVariableTable.of(body).find("value", use));
+		Assert.assertNull("Variables should not be visible in earlier cases", LocalVariableTable.of(body).find("value", body.getStatement(0).asSwitchStmt().getEntry(0).getStatement(0)));
+	}
+
+	@Test
+	public void testMethodTable() {
+		ClassPath classPath = ClassPath.of();
+		MethodTable table = MethodTable.of(classPath);
+		Assert.assertSame(table, MethodTable.of(classPath));
+
+		List<MethodInfo> hashCode = table.getMethods(Type.of("java.lang.StringBuilder"), "hashCode", false);
+		Assert.assertEquals(1, hashCode.size());
+		Assert.assertEquals("java.lang.Object", hashCode.get(0).getClassInfo().getName());
+		Assert.assertEquals("java.util.ArrayList", table.getMethods(Type.of("java.util.ArrayList"), "forEach", false).get(0).getClassInfo().getName());
+		Assert.assertFalse(table.getMethods(Type.STRING, "valueOf", true).isEmpty());
+		Assert.assertTrue(table.getMethods(Type.STRING, "length", true).isEmpty());
+
+		ResolutionContext context = new ResolutionContext("org.example", Collections.emptyList(), Collections.emptyList(), classPath, null);
+		List<Type> oneInt = Collections.singletonList(Type.INT);
+		List<Type> twoInts = Arrays.asList(Type.INT, Type.INT);
+		MethodInfo substring = context.resolveMethodCallType(Type.STRING, "substring", () -> oneInt);
+		Assert.assertEquals(1, substring.getParameters().size());
+		Assert.assertSame(substring, context.resolveMethodCallType(Type.STRING, "substring", () -> oneInt));
+		Assert.assertEquals(2, context.resolveMethodCallType(Type.STRING, "substring", () -> twoInts).getParameters().size());
+	}
+
+	private static boolean resolves(ResolutionContext context, String name) {
+		try {
+			context.resolve(name);
+			return true;
+		} catch (TransformationException e) {
+			return false;
+		}
+	}
+
+	private static class CountingClassPath implements ClassPath {
+		private final ClassPath system = ClassPath.of();
+		int lookups;
+
+		@Override
+		public ClassInfo getClassInfo(String className) {
+			lookups++;
+			return system.getClassInfo(className);
+		}
+
+		@Override
+		public boolean addPath(Path path) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean hasPath(Path path) {
+			return system.hasPath(path);
+		}
+
+		@Override
+		public Iterator<ClassInfo> iterator() {
+			return system.iterator();
+		}
+	}
 }
@@ -0,0 +1,80 @@
+package dev.minco.javatransformer.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.body.MethodDeclaration;
+
+import dev.minco.javatransformer.api.AccessFlags;
+import dev.minco.javatransformer.api.ClassPath;
+import dev.minco.javatransformer.api.MethodInfo;
+import dev.minco.javatransformer.api.Type;
+import dev.minco.javatransformer.internal.javaparser.CompilationUnitInfo;
+
+public class SourceInfoTest {
+	private static final int METHODS = 200;
+
+	private static SourceInfo parse(String body) {
+		return CompilationUnitInfo.getSourceInfos(StaticJavaParser.parse("package org.example; class Example { " + body + " }"), ClassPath.of()).get(0);
+	}
+
+	@Test
+	public void testDirectMemberChangesAreFound() {
+		SourceInfo info = parse("void first() {}");
+		MethodInfo like = SimpleMethodInfo.of(new AccessFlags(0), Collections.emptyList(), new Type("V"), "direct", Collections.emptyList());
+		Assert.assertNull(info.get(like));
+
+		MethodDeclaration direct = info.getJavaParserType().addMethod("direct");
+		Assert.assertNotNull("Members added to the declaration directly should be found", info.get(like));
+
+		info.getJavaParserType().getMembers().remove(direct);
+		Assert.assertNull("Members removed from the declaration directly should not be found", info.get(like));
+	}
+
+	@Test
+	public void testConcurrentMethodLookup() throws InterruptedException {
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < METHODS; i++)
+			body.append("void method").append(i).append("() {} int field").append(i).append(";");
+		SourceInfo info = parse(body.toString());
+
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<MethodInfo> found = Collections.synchronizedList(new ArrayList<>());
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+					for (int i = 0; i < METHODS; i++) {
+						MethodInfo method = info.get(SimpleMethodInfo.of(new AccessFlags(0), Collections.emptyList(), new Type("V"), "method" + i, Collections.emptyList()));
+						Assert.assertNotNull(method);
+						found.add(method);
+						Assert.assertNotNull(info.get(SimpleFieldInfo.of(new AccessFlags(0), Type.INT, "field" + i)));
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads)
+			thread.join();
+
+		Assert.assertNull(failure.get());
+		Set<MethodInfo> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+		distinct.addAll(found);
+		Assert.assertEquals("Every thread should get the same wrapper for a method", METHODS, distinct.size());
+	}
+}
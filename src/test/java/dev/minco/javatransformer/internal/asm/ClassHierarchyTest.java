@@ -0,0 +1,97 @@
+package dev.minco.javatransformer.internal.asm;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import dev.minco.javatransformer.api.AnnotationWithDefault;
+import dev.minco.javatransformer.api.ClassPath;
+import dev.minco.javatransformer.api.JavaTransformer;
+import dev.minco.javatransformer.api.TestEnum;
+import dev.minco.javatransformer.api.TransformationException;
+
+public class ClassHierarchyTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testGetCommonSuperClass() {
+		ClassHierarchy hierarchy = ClassHierarchy.of(ClassPath.of());
+
+		Assert.assertEquals("java/lang/Number", hierarchy.getCommonSuperClass("java/lang/Integer", "java/lang/Long"));
+		Assert.assertEquals("java/util/AbstractList", hierarchy.getCommonSuperClass("java/util/ArrayList", "java/util/LinkedList"));
+		Assert.assertEquals("java/util/AbstractCollection", hierarchy.getCommonSuperClass("java/util/ArrayList", "java/util/HashSet"));
+		Assert.assertEquals("java/lang/Object", hierarchy.getCommonSuperClass("java/lang/String", "java/lang/Integer"));
+		Assert.assertEquals("java/util/Collection", hierarchy.getCommonSuperClass("java/util/Collection", "java/util/ArrayList"));
+		Assert.assertEquals("java/lang/Object", hierarchy.getCommonSuperClass("java/util/List", "java/util/Set"));
+		Assert.assertTrue(hierarchy.isAssignableFrom("java/lang/Iterable", "java/util/ArrayList"));
+	}
+
+	@Test
+	public void testSuperTypes() {
+		ClassPath classPath = ClassPath.of();
+		ClassHierarchy hierarchy = ClassHierarchy.of(classPath);
+
+		Assert.assertSame(hierarchy, ClassHierarchy.of(classPath));
+		Assert.assertSame(hierarchy, classPath.getHierarchy());
+		Assert.assertEquals("java/lang/Number", hierarchy.getSuperClass("java/lang/Integer"));
+		Assert.assertNull(hierarchy.getSuperClass("java/lang/Object"));
+		Assert.assertTrue(hierarchy.isInterface("java/util/List"));
+		Assert.assertTrue(hierarchy.getSuperTypes("java/util/ArrayList").contains("java/util/AbstractList"));
+		Assert.assertTrue(hierarchy.getSuperTypes("java/util/ArrayList").contains("java/util/Collection"));
+		Assert.assertTrue(hierarchy.getSuperTypes("java/util/ArrayList").contains("java/lang/Object"));
+		Assert.assertTrue(hierarchy.getAllInterfaces("java/util/ArrayList").contains("java/lang/Iterable"));
+		Assert.assertFalse(hierarchy.getAllInterfaces("java/util/ArrayList").contains("java/util/AbstractList"));
+		Assert.assertFalse(hierarchy.isAssignableFrom("java/util/Set", "java/util/ArrayList"));
+	}
+
+	@Test
+	public void testSubtypes() {
+		ClassPath noParent = null;
+		ClassPath classPath = ClassPath.of(noParent, JavaTransformer.pathFromClass(ClassHierarchyTest.class));
+		ClassHierarchy hierarchy = ClassHierarchy.of(classPath);
+		String testEnum = TestEnum.class.getName().replace('.', '/');
+		String annotation = AnnotationWithDefault.class.getName().replace('.', '/');
+
+		Assert.assertTrue(hierarchy.getDirectSubtypes("java/lang/Enum").contains(testEnum));
+		Assert.assertTrue(hierarchy.getImplementors("java/lang/Enum").contains(testEnum));
+		Assert.assertTrue(hierarchy.getSubtypes("java/lang/annotation/Annotation").contains(annotation));
+		Assert.assertFalse(hierarchy.getImplementors("java/lang/annotation/Annotation").contains(annotation));
+		Assert.assertTrue(hierarchy.getSubtypes(testEnum).isEmpty());
+	}
+
+	@Test(expected = TypeNotPresentException.class)
+	public void testMissingClass() {
+		ClassHierarchy.of(ClassPath.of()).getCommonSuperClass("java/lang/String", "org/example/DoesNotExist");
+	}
+
+	@Test
+	public void testCyclicHierarchy() throws Exception {
+		Path classes = folder.newFolder("classes").toPath();
+		writeClass(classes, "org/example/First", "org/example/Second");
+		writeClass(classes, "org/example/Second", "org/example/First");
+		ClassHierarchy hierarchy = ClassHierarchy.of(ClassPath.of(classes));
+
+		try {
+			hierarchy.getSuperTypes("org/example/First");
+			Assert.fail("A cyclic hierarchy should fail");
+		} catch (TransformationException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("org/example/Second -> org/example/First"));
+		}
+	}
+
+	private static void writeClass(Path classes, String name, String superName) throws Exception {
+		ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, superName, null);
+		writer.visitEnd();
+		Path file = classes.resolve(name + ".class");
+		Files.createDirectories(file.getParent());
+		Files.write(file, writer.toByteArray());
+	}
+}
@@ -0,0 +1,131 @@
+package dev.minco.javatransformer.internal.asm;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodNode;
+
+public class LazyClassNodeTest {
+	private static byte[] readOwnClass() throws IOException {
+		try (InputStream is = LazyClassNodeTest.class.getResourceAsStream("LazyClassNodeTest.class")) {
+			Assert.assertNotNull(is);
+			return is.readAllBytes();
+		}
+	}
+
+	public static MethodNode getMethod(ClassNode node, String name) {
+		for (MethodNode method : node.methods)
+			if (method.name.equals(name))
+				return method;
+		throw new AssertionError("Missing method " + name);
+	}
+
+	@Test
+	public void testCodeIsLoadedOnDemand() throws Exception {
+		LazyClassNode node = new LazyClassNode(new ClassReader(readOwnClass()));
+		MethodNode method = getMethod(node, "getMethod");
+		MethodNode other = getMethod(node, "readOwnClass");
+
+		Assert.assertFalse(node.isCodeLoaded(method));
+		Assert.assertEquals(0, method.instructions.size());
+
+		method.name = "renamedBeforeLoading";
+		node.loadCode(method);
+
+		Assert.assertTrue(node.isCodeLoaded(method));
+		Assert.assertNotEquals(0, method.instructions.size());
+		Assert.assertNotEquals(0, method.maxLocals);
+		Assert.assertFalse(node.isCodeLoaded(other));
+	}
+
+	@Test
+	public void testAcceptMatchesEagerlyReadClass() throws Exception {
+		byte[] data = readOwnClass();
+
+		ClassNode eager = new ClassNode();
+		new ClassReader(data).accept(eager, ClassReader.EXPAND_FRAMES);
+		ClassWriter eagerWriter = new ClassWriter(0);
+		eager.accept(eagerWriter);
+
+		ClassWriter lazyWriter = new ClassWriter(0);
+		new LazyClassNode(new ClassReader(data)).accept(lazyWriter);
+
+		Assert.assertArrayEquals(eagerWriter.toByteArray(), lazyWriter.toByteArray());
+	}
+
+	@Test
+	public void testCodeHasExpandedFrames() throws Exception {
+		LazyClassNode node = new LazyClassNode(new ClassReader(readOwnClass()));
+		MethodNode method = getMethod(node, "getMethod");
+		node.loadCode(method);
+
+		boolean hasFrames = false;
+		for (AbstractInsnNode insn : method.instructions) {
+			if (insn instanceof FrameNode) {
+				hasFrames = true;
+				Assert.assertEquals(Opcodes.F_NEW, ((FrameNode) insn).type);
+			}
+		}
+		Assert.assertTrue(hasFrames);
+	}
+
+	@Test
+	public void testWriteCopiesUnchangedMethods() throws Exception {
+		byte[] data = readOwnClass();
+		ClassReader reader = new ClassReader(data);
+		LazyClassNode node = new LazyClassNode(reader);
+
+		MethodNode changed = getMethod(node, "getMethod");
+		node.loadCode(changed);
+		LabelNode label = new LabelNode();
+		changed.instructions.insert(label);
+		changed.instructions.insert(new JumpInsnNode(Opcodes.GOTO, label));
+		node.markControlFlowChanged(changed);
+
+		FilteringClassWriter writer = new FilteringClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+		node.write(writer);
+		byte[] written = writer.toByteArray();
+
+		Assert.assertFalse(node.isCodeLoaded(getMethod(node, "readOwnClass")));
+
+		ClassNode original = new ClassNode();
+		reader.accept(original, 0);
+		ClassNode result = new ClassNode();
+		new ClassReader(written).accept(result, 0);
+
+		// invoking the changed method makes the JVM verify the written class
+		Class<?> defined = new Loader().define(written);
+		Object found = defined.getDeclaredMethod("getMethod", ClassNode.class, String.class).invoke(null, result, "readOwnClass");
+		Assert.assertSame(result.methods.get(0).getClass(), found.getClass());
+		Assert.assertEquals(original.methods.size(), result.methods.size());
+		for (int i = 0; i < original.methods.size(); i++) {
+			MethodNode before = original.methods.get(i);
+			MethodNode after = result.methods.get(i);
+			Assert.assertEquals(before.name, after.name);
+			if (before.name.equals("getMethod"))
+				Assert.assertNotEquals(before.instructions.size(), after.instructions.size());
+			else
+				Assert.assertEquals(before.instructions.size(), after.instructions.size());
+		}
+	}
+
+	private static class Loader extends ClassLoader {
+		Loader() {
+			super(LazyClassNodeTest.class.getClassLoader());
+		}
+
+		Class<?> define(byte[] data) {
+			return defineClass(null, data, 0, data.length);
+		}
+	}
+}
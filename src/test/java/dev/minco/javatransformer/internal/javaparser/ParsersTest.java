@@ -0,0 +1,66 @@
+package dev.minco.javatransformer.internal.javaparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+
+public class ParsersTest {
+	private static final String SOURCE = "package org.example; /** Example */ class Example { /* body */ void test() {} }";
+
+	@After
+	public void resetConfiguration() {
+		Parsers.setConfiguration(Parsers.defaultConfiguration());
+	}
+
+	@Test
+	public void testParsersAreReused() throws InterruptedException {
+		JavaParser parser = Parsers.getParser();
+		Assert.assertSame("The same thread should reuse its parser", parser, Parsers.getParser());
+
+		AtomicReference<JavaParser> otherThread = new AtomicReference<>();
+		Thread thread = new Thread(() -> otherThread.set(Parsers.getParser()));
+		thread.start();
+		thread.join();
+		Assert.assertNotNull(otherThread.get());
+		Assert.assertNotSame("Other threads should have their own parser", parser, otherThread.get());
+
+		CompilationUnit first = Parsers.parse(stream(SOURCE));
+		CompilationUnit second = Parsers.parse(stream(SOURCE));
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals(first, second);
+		Assert.assertTrue(first.getType(0).getComment().isPresent());
+		Assert.assertSame("Parsing should not replace the parser", parser, Parsers.getParser());
+	}
+
+	@Test
+	public void testConfigurationChange() {
+		ParserConfiguration configuration = Parsers.defaultConfiguration();
+		configuration.setAttributeComments(false);
+		JavaParser previous = Parsers.getParser();
+		Parsers.setConfiguration(configuration);
+
+		CompilationUnit unit = Parsers.parse(stream(SOURCE));
+		Assert.assertSame(configuration, Parsers.getConfiguration());
+		Assert.assertNotSame("A new configuration should replace the parser", previous, Parsers.getParser());
+		Assert.assertFalse(unit.getType(0).getComment().isPresent());
+	}
+
+	@Test(expected = ParseProblemException.class)
+	public void testParseProblem() {
+		Parsers.parse(stream("class {"));
+	}
+
+	private static InputStream stream(String source) {
+		return new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,145 @@
+package dev.minco.javatransformer.internal.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BoundedCacheTest {
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		AtomicInteger loads = new AtomicInteger();
+		BoundedCache<String, String> cache = new BoundedCache<>(String::length, 10);
+
+		Assert.assertEquals("aaaa", cache.get("a", () -> load(loads, "aaaa")));
+		Assert.assertEquals("bbbb", cache.get("b", () -> load(loads, "bbbb")));
+		Assert.assertEquals("aaaa", cache.get("a", () -> load(loads, "aaaa")));
+		Assert.assertEquals(2, loads.get());
+		Assert.assertEquals(8, cache.getWeight());
+
+		// b is now the least recently used
+		cache.get("c", () -> load(loads, "cccc"));
+		Assert.assertEquals(1, cache.getEvictions());
+		Assert.assertEquals(8, cache.getWeight());
+		cache.get("a", () -> load(loads, "aaaa"));
+		Assert.assertEquals(3, loads.get());
+		cache.get("b", () -> load(loads, "bbbb"));
+		Assert.assertEquals(4, loads.get());
+
+		Assert.assertEquals(4, cache.getMisses());
+		Assert.assertEquals(2, cache.getHits());
+
+		cache.setMaxWeight(4);
+		Assert.assertEquals(1, cache.size());
+		cache.clear();
+		Assert.assertEquals(0, cache.getWeight());
+	}
+
+	@Test
+	public void testKeepsValueHeavierThanLimit() {
+		BoundedCache<String, String> cache = new BoundedCache<>(String::length, 2);
+		cache.get("a", () -> "aaaa");
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals("aaaa", cache.get("a", () -> "other"));
+	}
+
+	@Test
+	public void testLoadsOnceForEqualKeys() throws InterruptedException {
+		AtomicInteger loads = new AtomicInteger();
+		BoundedCache<String, String> cache = new BoundedCache<>(String::length, 10);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				// equal but not identical keys, as built by callers
+				cache.get(new String("a"), () -> {
+					try {
+						Thread.sleep(50);
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+					return load(loads, "aaaa");
+				});
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads)
+			thread.join();
+
+		Assert.assertEquals(1, loads.get());
+		Assert.assertEquals(4, cache.getWeight());
+	}
+
+	@Test
+	public void testLoaderFailureIsNotCached() {
+		BoundedCache<String, String> cache = new BoundedCache<>(String::length, 10);
+		try {
+			cache.get("a", () -> {
+				throw new TypeNotPresentException("a", null);
+			});
+			Assert.fail("The loader's exception should be thrown");
+		} catch (TypeNotPresentException ignored) {
+		}
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals("aaaa", cache.get("a", () -> "aaaa"));
+	}
+
+	@Test
+	public void testWaitingCallerGetsLoaderFailure() throws InterruptedException {
+		BoundedCache<String, String> cache = new BoundedCache<>(String::length, 10);
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch fail = new CountDownLatch(1);
+		Thread loader = new Thread(() -> {
+			try {
+				cache.get("a", () -> {
+					loading.countDown();
+					try {
+						fail.await();
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+					throw new TypeNotPresentException("a", null);
+				});
+			} catch (TypeNotPresentException ignored) {
+			}
+		});
+		loader.start();
+		loading.await();
+
+		AtomicReference<Throwable> thrown = new AtomicReference<>();
+		Thread waiter = new Thread(() -> {
+			try {
+				cache.get("a", () -> "aaaa");
+			} catch (Throwable t) {
+				thrown.set(t);
+			}
+		});
+		waiter.start();
+		// give the waiter time to find the entry which is being loaded
+		Thread.sleep(50);
+		fail.countDown();
+		loader.join();
+		waiter.join();
+
+		if (thrown.get() != null)
+			Assert.assertEquals("The loader's exception should not be wrapped", TypeNotPresentException.class, thrown.get().getClass());
+		Assert.assertEquals("A failed load should not be counted as a hit", 0, cache.getHits());
+		Assert.assertEquals("aaaa", cache.get("a", () -> "aaaa"));
+	}
+
+	private static String load(AtomicInteger loads, String value) {
+		loads.incrementAndGet();
+		return value;
+	}
+}
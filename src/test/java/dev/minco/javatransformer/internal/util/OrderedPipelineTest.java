@@ -0,0 +1,65 @@
+package dev.minco.javatransformer.internal.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OrderedPipelineTest {
+	@Test
+	public void testFailureWaitsForRunningTasks() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			AtomicInteger finished = new AtomicInteger();
+			List<Integer> consumed = new ArrayList<>();
+			OrderedPipeline<Integer> pipeline = new OrderedPipeline<>(executor, 8, consumed::add);
+			try {
+				pipeline.submit(OrderedPipelineTest::fail);
+				for (int i = 0; i < 4; i++)
+					pipeline.submit(() -> slow(finished));
+				pipeline.finish();
+				Assert.fail("finish should rethrow the task failure");
+			} catch (IllegalStateException expected) {
+				// expected
+			} finally {
+				pipeline.cancel();
+			}
+
+			int afterCancel = finished.get();
+			Thread.sleep(100);
+			Assert.assertEquals("No task should still be running after cancel", afterCancel, finished.get());
+			Assert.assertTrue(consumed.isEmpty());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testCancelAfterFinish() {
+		List<Integer> consumed = new ArrayList<>();
+		OrderedPipeline<Integer> pipeline = new OrderedPipeline<>(Runnable::run, 2, consumed::add);
+		for (int i = 0; i < 3; i++)
+			pipeline.submit(() -> 1);
+		pipeline.finish();
+		pipeline.cancel();
+		Assert.assertEquals(3, consumed.size());
+	}
+
+	private static Integer fail() {
+		throw new IllegalStateException("failed");
+	}
+
+	private static Integer slow(AtomicInteger finished) {
+		try {
+			Thread.sleep(50);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		finished.incrementAndGet();
+		return 1;
+	}
+}
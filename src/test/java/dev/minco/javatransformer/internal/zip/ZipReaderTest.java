@@ -0,0 +1,63 @@
+package dev.minco.javatransformer.internal.zip;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ZipReaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReadersAreShared() throws Exception {
+		Path zip = folder.getRoot().toPath().resolve("test.zip");
+		try (ZipWriter writer = ZipWriter.create(zip)) {
+			writer.write("a.txt", "a".getBytes(StandardCharsets.UTF_8));
+		}
+
+		ZipReader first = ZipReader.open(zip);
+		ZipReader second = ZipReader.open(zip.getParent().resolve("./test.zip"));
+		Assert.assertSame(first, second);
+
+		first.close();
+		ZipReader.Entry entry = second.getEntry("a.txt");
+		Assert.assertNotNull(entry);
+		Assert.assertEquals("a", new String(second.read(entry), StandardCharsets.UTF_8));
+
+		second.close();
+		try {
+			second.read(entry);
+			Assert.fail("Reading after all references are closed should fail");
+		} catch (IOException ignored) {
+		}
+
+		try (ZipReader third = ZipReader.open(zip)) {
+			Assert.assertNotSame(first, third);
+			Assert.assertEquals("a", new String(third.read(entry), StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void testCloseUnmapsFile() throws Exception {
+		Path maps = Paths.get("/proc/self/maps");
+		Assume.assumeTrue("Needs /proc/self/maps to see mappings", Files.isReadable(maps));
+		Path zip = folder.getRoot().toPath().resolve("unmap.zip");
+		try (ZipWriter writer = ZipWriter.create(zip)) {
+			writer.write("a.txt", "a".getBytes(StandardCharsets.UTF_8));
+		}
+		String name = zip.toRealPath().toString();
+
+		ZipReader reader = ZipReader.open(zip);
+		Assert.assertTrue(new String(Files.readAllBytes(maps), StandardCharsets.UTF_8).contains(name));
+		reader.close();
+		Assert.assertFalse("Closing the last reference should unmap the file", new String(Files.readAllBytes(maps), StandardCharsets.UTF_8).contains(name));
+	}
+}
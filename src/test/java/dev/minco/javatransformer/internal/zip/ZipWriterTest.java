@@ -0,0 +1,95 @@
+package dev.minco.javatransformer.internal.zip;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import lombok.val;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dev.minco.javatransformer.internal.util.StreamUtil;
+
+public class ZipWriterTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWriteAndCopyRaw() throws Exception {
+		Path first = folder.getRoot().toPath().resolve("first.zip");
+		Path second = folder.getRoot().toPath().resolve("second.zip");
+		byte[] text = "hello hello hello hello hello".getBytes(StandardCharsets.UTF_8);
+
+		try (val writer = ZipWriter.create(first)) {
+			writer.write("dir/", new byte[0]);
+			writer.write("dir/text.txt", text);
+		}
+
+		try (val reader = ZipReader.open(first); val writer = ZipWriter.create(second)) {
+			Assert.assertEquals(2, reader.getEntries().size());
+			val entry = reader.getEntry("dir/text.txt");
+			Assert.assertNotNull(entry);
+			Assert.assertEquals(ZipReader.DEFLATED, entry.getMethod());
+			Assert.assertArrayEquals(text, reader.read(entry));
+			for (val it : reader.getEntries())
+				writer.copyRaw(reader, it);
+			writer.write("extra.txt", text);
+		}
+
+		try (val zf = new ZipFile(second.toFile())) {
+			Assert.assertEquals(3, zf.size());
+			Assert.assertTrue(zf.getEntry("dir/").isDirectory());
+			Assert.assertArrayEquals(text, StreamUtil.readFully(zf.getInputStream(zf.getEntry("dir/text.txt"))));
+			Assert.assertArrayEquals(text, StreamUtil.readFully(zf.getInputStream(zf.getEntry("extra.txt"))));
+		}
+	}
+
+	@Test
+	public void testCopyRawKeepsEntryMetadata() throws Exception {
+		Path source = folder.getRoot().toPath().resolve("source.zip");
+		Path copy = folder.getRoot().toPath().resolve("copy.zip");
+		byte[] text = "hello hello hello hello hello".getBytes(StandardCharsets.UTF_8);
+		FileTime time = FileTime.fromMillis(1234567890000L);
+
+		try (val os = new ZipOutputStream(Files.newOutputStream(source))) {
+			ZipEntry entry = new ZipEntry("text.txt");
+			entry.setLastModifiedTime(time);
+			entry.setComment("comment");
+			os.putNextEntry(entry);
+			os.write(text);
+			os.closeEntry();
+		}
+
+		try (val reader = ZipReader.open(source); val writer = ZipWriter.create(copy)) {
+			for (val it : reader.getEntries())
+				writer.copyRaw(reader, it);
+		}
+
+		try (val original = ZipReader.open(source); val copied = ZipReader.open(copy)) {
+			val expected = original.getEntry("text.txt");
+			val actual = copied.getEntry("text.txt");
+			boolean dataDescriptor = (expected.getFlags() & 0x0008) != 0;
+			Assert.assertTrue("ZipOutputStream should use a data descriptor", dataDescriptor);
+			Assert.assertEquals(expected.getFlags() & ~0x0008, actual.getFlags());
+			Assert.assertEquals(expected.getVersionMadeBy(), actual.getVersionMadeBy());
+			Assert.assertEquals(expected.getExternalAttributes(), actual.getExternalAttributes());
+			Assert.assertArrayEquals(expected.getExtra(), actual.getExtra());
+			Assert.assertArrayEquals(original.readLocalExtra(expected), copied.readLocalExtra(actual));
+			Assert.assertArrayEquals(original.readRaw(expected), copied.readRaw(actual));
+		}
+
+		try (val zf = new ZipFile(copy.toFile())) {
+			ZipEntry entry = zf.getEntry("text.txt");
+			Assert.assertEquals("comment", entry.getComment());
+			Assert.assertEquals(time, entry.getLastModifiedTime());
+			Assert.assertArrayEquals(text, StreamUtil.readFully(zf.getInputStream(entry)));
+		}
+	}
+}